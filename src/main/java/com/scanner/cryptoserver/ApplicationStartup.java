@@ -2,20 +2,18 @@ package com.scanner.cryptoserver;
 
 import com.scanner.cryptoserver.exchange.binance.service.AbstractBinanceExchangeService;
 import com.scanner.cryptoserver.exchange.bittrex.service.BittrexServiceImpl;
-import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapService;
+import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapRefresher;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo;
-import com.scanner.cryptoserver.util.dto.Coin;
+import com.scanner.cryptoserver.util.CacheSnapshotStore;
+import com.scanner.cryptoserver.util.IconAtlas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 @Component
 public class ApplicationStartup implements ApplicationListener<ApplicationReadyEvent> {
@@ -23,15 +21,19 @@ public class ApplicationStartup implements ApplicationListener<ApplicationReadyE
     private final AbstractBinanceExchangeService binanceService;
     private final AbstractBinanceExchangeService binanceUsaService;
     private final BittrexServiceImpl bittrexService;
-    private final CoinMarketCapService coinMarketCapService;
+    private final CoinMarketCapRefresher coinMarketCapRefresher;
+    private final CacheSnapshotStore cacheSnapshotStore;
+    private final IconAtlas iconAtlas;
 
     public ApplicationStartup(AbstractBinanceExchangeService binanceService, AbstractBinanceExchangeService binanceUsaService, BittrexServiceImpl bittrexService,
-                              CoinMarketCapService coinMarketCapService) {
+                              CoinMarketCapRefresher coinMarketCapRefresher, CacheSnapshotStore cacheSnapshotStore, IconAtlas iconAtlas) {
         super();
         this.binanceService = binanceService;
         this.binanceUsaService = binanceUsaService;
         this.bittrexService = bittrexService;
-        this.coinMarketCapService = coinMarketCapService;
+        this.coinMarketCapRefresher = coinMarketCapRefresher;
+        this.cacheSnapshotStore = cacheSnapshotStore;
+        this.iconAtlas = iconAtlas;
     }
 
     /**
@@ -40,12 +42,20 @@ public class ApplicationStartup implements ApplicationListener<ApplicationReadyE
      */
     @Override
     public void onApplicationEvent(final ApplicationReadyEvent event) {
+        //build the icon atlas in the background, so that the first client doesn't wait for it
+        CompletableFuture.runAsync(iconAtlas::getAtlas);
         String[] args = event.getArgs();
         if (args != null && args.length > 0 && args[0] != null && args[0].equals("sandbox")) {
             //run in sandbox mode - do not call exchange info here
             Log.info("Running Spring Boot application in Sandbox mode.");
             return;
         }
+        //Load the caches saved before the last shutdown. The exchange info calls below then get the saved
+        //exchange info (with the market caps already set) right away, and it is reloaded in the background.
+        cacheSnapshotStore.register(binanceService.get24HrAllCoinTickerRefresher());
+        cacheSnapshotStore.register(binanceUsaService.get24HrAllCoinTickerRefresher());
+        cacheSnapshotStore.register(bittrexService.get24HrAllCoinTickerRefresher());
+        cacheSnapshotStore.start();
         //Asynchronously get the exchange information on startup.
         //Do not include the calls that fill the market cap, since that data hasn't been retrieved yet,
         //and will be retrieved when the threads finish retrieving the exchange info.
@@ -55,33 +65,20 @@ public class ApplicationStartup implements ApplicationListener<ApplicationReadyE
         CompletableFuture<ExchangeInfo> futureBinanceUsa = CompletableFuture.supplyAsync(binanceUsaService::getExchangeInfoWithoutMarketCap);
         CompletableFuture<ExchangeInfo> futureBittrex = CompletableFuture.supplyAsync(bittrexService::getExchangeInfo);
         CompletableFuture.allOf(futureBinance, futureBinanceUsa, futureBittrex)
-                .thenApplyAsync(dummy -> {
-                    ExchangeInfo binanceInfo = futureBinance.join();
-                    ExchangeInfo binanceUsaInfo = futureBinanceUsa.join();
-                    ExchangeInfo bittrexInfo = futureBittrex.join();
-
-                    Set<String> set = binanceInfo.getCoins().stream().map(Coin::getBaseAsset).collect(Collectors.toSet());
-                    Set<String> usaSet = binanceUsaInfo.getCoins().stream().map(Coin::getBaseAsset).collect(Collectors.toSet());
-                    Set<String> bittrexSet = bittrexInfo.getCoins().stream().map(Coin::getBaseAsset).collect(Collectors.toSet());
-                    set.addAll(usaSet);
-                    set.addAll(bittrexSet);
-                    return set;
-                })
-                .whenComplete((coinSet, error) -> {
-                    //now get the market cap value for each coin
+                .thenRunAsync(() -> {
+                    //now get the market cap value for each coin, and keep it refreshed within the daily credits
                     //note: this uses the Binance exchange visitor - but what about the Bittrex exchange? For now,
                     //the Bittrex exchange uses the same symbols as Binance, but that could change. If so, this
                     //will have to be modified to accommodate the Bittrex (or other exchange) info.
-                    CoinMarketCapListing coinMarketCapInfo = coinMarketCapService.getCoinMarketCapListingWithCoinSet(coinSet, binanceService.getExchangeVisitor());
+                    CoinMarketCapListing coinMarketCapInfo = coinMarketCapRefresher.start();
 
                     //Now fill the market cap for each coin on the exchanges.
-                    //Here, we set the exchange info market cap for each coin, retrieving it from the coin market cap info.
-                    try {
-                        futureBinance.get().getCoins().forEach(coin -> coin.addMarketCapAndId(binanceService.getExchangeVisitor(), coinMarketCapInfo));
-                        futureBinanceUsa.get().getCoins().forEach(coin -> coin.addMarketCapAndId(binanceUsaService.getExchangeVisitor(), coinMarketCapInfo));
-                        futureBittrex.get().getCoins().forEach(coin -> coin.addMarketCapAndId(bittrexService.getExchangeVisitor(), coinMarketCapInfo));
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.error("Could not access exchange future for adding market cap: {}", e.getMessage());
+                    //Here, each exchange info in the cache is replaced with a copy that has the market cap for each coin,
+                    //retrieving it from the coin market cap info. The exchange info that is being read is never changed.
+                    if (coinMarketCapInfo != null) {
+                        binanceService.setMarketCaps(coinMarketCapInfo);
+                        binanceUsaService.setMarketCaps(coinMarketCapInfo);
+                        bittrexService.setMarketCaps(coinMarketCapInfo);
                     }
                 })
                 .whenComplete((a, error) -> {
@@ -0,0 +1,94 @@
+package com.scanner.cryptoserver;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The specs of the caches, by cache name, as declared under "caching.specs" in the application yml.
+ * Caches that are per exchange, such as "binanceusa-All24HourTicker", use the spec for the name after the exchange ("All24HourTicker").
+ */
+@ConfigurationProperties(prefix = "caching")
+public class CacheSpecs {
+    private final Map<String, Spec> specs = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public static class Spec {
+        //either the maximum number of entries, or the maximum weight of the entries (see CacheWeigher)
+        private Long maximumSize;
+        private Long maximumWeight;
+        private Duration expireAfterWrite;
+        private Duration expireAfterAccess;
+        //when set, the cache is a refresh-ahead cache: after this time, a value is returned but reloaded in the background
+        private Duration refreshAfter;
+        private boolean recordStats;
+
+        public Long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(Long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Long getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(Long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+
+        public Duration getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        public void setExpireAfterAccess(Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+        }
+
+        public Duration getRefreshAfter() {
+            return refreshAfter;
+        }
+
+        public void setRefreshAfter(Duration refreshAfter) {
+            this.refreshAfter = refreshAfter;
+        }
+
+        public boolean isRecordStats() {
+            return recordStats;
+        }
+
+        public void setRecordStats(boolean recordStats) {
+            this.recordStats = recordStats;
+        }
+    }
+
+    public Map<String, Spec> getSpecs() {
+        return specs;
+    }
+
+    /**
+     * Find the spec for a cache.
+     *
+     * @param cacheName the name of the cache, such as "CoinCache" or "binanceusa-All24HourTicker".
+     * @return the spec, or empty if there is no spec for the cache.
+     */
+    public Optional<Spec> getSpec(String cacheName) {
+        Spec spec = specs.get(cacheName);
+        if (spec == null && cacheName.contains("-")) {
+            spec = specs.get(cacheName.substring(cacheName.lastIndexOf('-') + 1));
+        }
+        return Optional.ofNullable(spec);
+    }
+}
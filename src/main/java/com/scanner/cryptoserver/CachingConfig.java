@@ -1,90 +1,85 @@
 package com.scanner.cryptoserver;
 
-import com.google.common.cache.CacheBuilder;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.scanner.cryptoserver.util.CacheSnapshotStore;
+import com.scanner.cryptoserver.util.CacheWeigher;
+import com.scanner.cryptoserver.util.RefreshAheadCache;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCache;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.cache.interceptor.SimpleKeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
-
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheSpecs.class)
 /*
     Configure caching. The caching is necessary to prevent too many calls to the exchanges.
     The exchanges limit the amount of data that can be retrieved, therefore, caching helps
     to prevent too much data being retrieved.
+    Each cache is declared with its spec (size, expire times, etc.) under "caching.specs" in the application yml.
+    Caches that are slow to load have a refresh time: after the refresh time, the value is still
+    returned but is reloaded in the background. Only after the expire time does a caller wait for the value.
  */
 public class CachingConfig extends CachingConfigurerSupport {
+    private final CacheSpecs cacheSpecs;
+
+    public CachingConfig(CacheSpecs cacheSpecs) {
+        this.cacheSpecs = cacheSpecs;
+    }
+
     @Bean
     public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager() {
+        return new CaffeineCacheManager() {
             @NotNull
             @Override
-            protected Cache createConcurrentMapCache(@NotNull final String name) {
-                //cache for coin pairs, such as BTCUSD
-                if (name.equals("CoinCache")) {
-                    return new ConcurrentMapCache(name, CacheBuilder.newBuilder()
-                            .expireAfterWrite(5, TimeUnit.MINUTES)
-                            .maximumSize(1000)
-                            .build()
-                            .asMap(),
-                            false);
-                }
-                if (name.equals("IconCache")) {
-                    return new ConcurrentMapCache(name, CacheBuilder.newBuilder()
-                            .expireAfterWrite(5, TimeUnit.DAYS)
-                            .maximumSize(1000)
-                            .build()
-                            .asMap(),
-                            false);
-                }
-                //cache for list of all coins
-                if (name.contains("All24HourTicker") || name.contains("AllMarkets")) {
-                    return new ConcurrentMapCache(name, CacheBuilder.newBuilder()
-                            .expireAfterWrite(15, TimeUnit.MINUTES)
-                            //the maximum size number is rather arbitrary - the time is really the important issue
-                            .maximumSize(5)
-                            .build()
-                            .asMap(),
-                            false);
-                }
-                //cache for exchange information
-                if (name.contains("ExchangeInfo")) {
-                    return new ConcurrentMapCache(name, CacheBuilder.newBuilder()
-                            //Keep the exchange info in the cache for one day -
-                            // add a minute to ensure that the coin market cap info is in there
-                            //which gets run by a scheduler on startup every day
-                            //Note: 1440 minutes is a 24-hour time period
-                            .expireAfterWrite(1441, TimeUnit.MINUTES)
-                            .maximumSize(5)
-                            .build()
-                            .asMap(),
-                            false);
-                }
-                if (name.contains("CoinMarketCap")) {
-                    return new ConcurrentMapCache(name, CacheBuilder.newBuilder()
-                            //Keep the market cap listing for two hours
-                            .expireAfterWrite(2, TimeUnit.HOURS)
-                            .maximumSize(5)
-                            .build()
-                            .asMap(),
-                            false);
-                }
-                return null;
+            protected Cache createCaffeineCache(@NotNull final String name) {
+                //a cache without a spec is a mistake - don't let the calls go to the exchange uncached
+                CacheSpecs.Spec spec = cacheSpecs.getSpec(name)
+                        .orElseThrow(() -> new IllegalStateException("No spec in caching.specs for cache: " + name));
+                return createCache(name, spec);
             }
         };
     }
 
+    static Cache createCache(String name, CacheSpecs.Spec spec) {
+        //the caches saved in the cache snapshot need the time each value was loaded, even if they aren't refreshed in the background
+        boolean refreshAhead = spec.getRefreshAfter() != null || CacheSnapshotStore.isSnapshotCache(name);
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (spec.getMaximumWeight() != null) {
+            builder.maximumWeight(spec.getMaximumWeight()).weigher(new CacheWeigher());
+        } else if (spec.getMaximumSize() != null) {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        if (spec.getExpireAfterWrite() != null) {
+            if (refreshAhead) {
+                //expire by the time the value was loaded, so that a value restored from the cache snapshot isn't kept longer
+                builder.expireAfter(new RefreshAheadCache.ExpireAfterLoad(spec.getExpireAfterWrite()));
+            } else {
+                builder.expireAfterWrite(spec.getExpireAfterWrite());
+            }
+        }
+        if (spec.getExpireAfterAccess() != null) {
+            builder.expireAfterAccess(spec.getExpireAfterAccess());
+        }
+        if (spec.isRecordStats()) {
+            builder.recordStats();
+        }
+        if (refreshAhead) {
+            return new RefreshAheadCache(name, builder.build(), spec.getRefreshAfter());
+        }
+        return new CaffeineCache(name, builder.build(), false);
+    }
+
     @Bean
     public KeyGenerator keyGenerator() {
         return new SimpleKeyGenerator();
     }
-}
\ No newline at end of file
+}
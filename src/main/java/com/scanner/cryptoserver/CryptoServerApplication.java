@@ -1,9 +1,11 @@
 package com.scanner.cryptoserver;
 
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
@@ -14,7 +16,8 @@ public class CryptoServerApplication {
 	}
 
 	@Bean
-	public RestTemplate restTemplate(RestTemplateBuilder builder) {
-		return builder.build();
+	public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient httpClient) {
+		//use the shared, pooled http client
+		return builder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient)).build();
 	}
 }
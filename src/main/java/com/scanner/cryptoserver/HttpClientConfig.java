@@ -0,0 +1,83 @@
+package com.scanner.cryptoserver;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+/*
+    Configure the http client that is shared by all the calls to the exchanges and the coin market cap api.
+    The connections are pooled and kept alive, so that a call to a host usually reuses an open connection
+    instead of paying for a new connection and TLS handshake. Responses are gzipped when the host supports it.
+    The timeouts are set in "http-client" in the application yml, and can be different for each host.
+ */
+public class HttpClientConfig {
+    //a pooled connection that has been idle this long is checked before it is used
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+    private final HttpClientProperties properties;
+
+    public HttpClientConfig(HttpClientProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxPerHost());
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
+        long keepAliveMillis = properties.getKeepAlive().toMillis();
+        Map<String, RequestConfig> hostConfigs = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        properties.getHosts().forEach((host, settings) -> hostConfigs.put(host, createRequestConfig(settings)));
+
+        //the http client asks for gzip and decompresses the response by default
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(createRequestConfig(null))
+                //use the timeouts for the host, if it has its own
+                .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+                    HttpClientContext clientContext = HttpClientContext.adapt(context);
+                    HttpHost target = clientContext.getTargetHost();
+                    RequestConfig config = target == null ? null : hostConfigs.get(target.getHostName());
+                    if (config != null) {
+                        clientContext.setRequestConfig(config);
+                    }
+                })
+                .setKeepAliveStrategy((response, context) -> {
+                    long hostKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return hostKeepAlive > 0 ? Math.min(hostKeepAlive, keepAliveMillis) : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private RequestConfig createRequestConfig(HttpClientProperties.Host host) {
+        Duration connectTimeout = host == null || host.getConnectTimeout() == null ? properties.getConnectTimeout() : host.getConnectTimeout();
+        Duration readTimeout = host == null || host.getReadTimeout() == null ? properties.getReadTimeout() : host.getReadTimeout();
+        return RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setConnectionRequestTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .build();
+    }
+}
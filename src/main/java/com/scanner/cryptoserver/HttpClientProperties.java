@@ -0,0 +1,90 @@
+package com.scanner.cryptoserver;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The settings of the shared http client that calls the exchanges and the coin market cap api,
+ * as declared under "http-client" in the application yml.
+ * The timeouts can be set for a host (such as "pro-api.coinmarketcap.com") under "http-client.hosts".
+ */
+@ConfigurationProperties(prefix = "http-client")
+public class HttpClientProperties {
+    //the maximum number of connections, for all hosts
+    private int maxTotal = 50;
+    //the maximum number of connections to a host
+    private int maxPerHost = 10;
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration readTimeout = Duration.ofSeconds(30);
+    //how long an idle connection is kept open - a host can ask for less with a "Keep-Alive" header
+    private Duration keepAlive = Duration.ofSeconds(30);
+    private final Map<String, Host> hosts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public static class Host {
+        private Duration connectTimeout;
+        private Duration readTimeout;
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    public void setMaxPerHost(int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Map<String, Host> getHosts() {
+        return hosts;
+    }
+}
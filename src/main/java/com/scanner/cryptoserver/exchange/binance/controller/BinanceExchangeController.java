@@ -1,25 +1,37 @@
 package com.scanner.cryptoserver.exchange.binance.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinTicker;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo;
 import com.scanner.cryptoserver.exchange.service.ExchangeService;
 import com.scanner.cryptoserver.util.SandboxUtil;
+import com.scanner.cryptoserver.util.SerializedResponse;
 import com.scanner.cryptoserver.util.dto.Coin;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 //@CrossOrigin(origins = "https://develop.d2vswqrfiywrsc.amplifyapp.com")
 @CrossOrigin(origins = "http://localhost:3000")
 @RequestMapping("api/v1/binance")
 public class BinanceExchangeController {
+    //the candles are reloaded at most once a minute (the refresh time of the coin cache)
+    private static final Duration KLINE_MAX_AGE = Duration.ofMinutes(1);
     private final ExchangeService binanceService;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<SerializedResponse> all24HourTickerResponse = new AtomicReference<>();
 
-    public BinanceExchangeController(ExchangeService binanceService) {
+    public BinanceExchangeController(ExchangeService binanceService, ObjectMapper objectMapper) {
         this.binanceService = binanceService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping(value = "/info", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -38,24 +50,44 @@ public class BinanceExchangeController {
      * Gets all the coins and 24-hour data on the exchange.
      * NOTE: This call has the heaviest "weight" of all exchange calls: Use sparingly!
      *
+     * @param acceptEncoding the encodings the client accepts - the data is sent gzipped if the client accepts gzip.
+     * @param ifNoneMatch    the ETag of the data the client already has - if the data hasn't changed, nothing is sent.
      * @return a list of all coins on the exchange over the past 24 hours.
      */
     @GetMapping(value = "/24HourTicker", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<CoinDataFor24Hr> getAll24HourTicker() {
+    public ResponseEntity<byte[]> getAll24HourTicker(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         List<CoinDataFor24Hr> data = binanceService.get24HrAllCoinTicker();
-        return data;
+        //the data only changes when it is refreshed, so it is serialized once for all the requests,
+        //and the client can cache it until the next refresh
+        return SerializedResponse.get(objectMapper, all24HourTickerResponse, data)
+                .toResponseEntity(acceptEncoding, ifNoneMatch, binanceService.get24HrAllCoinTickerMaxAge());
+    }
+
+    /**
+     * Streams the 24-hour data for all the coins on the exchange as Server-Sent Events.
+     * The client first gets a "snapshot" event with all the coins, and then a "delta" event
+     * with the coins that changed each time the data is refreshed.
+     *
+     * @return the event stream.
+     */
+    @GetMapping(value = "/24HourTicker/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAll24HourTicker() {
+        return binanceService.get24HrAllCoinTickerStream().subscribe();
     }
 
     @GetMapping(value = "/DayTicker/{symbol}/{interval}/{daysOrMonths}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<CoinTicker> getDayTicker(@PathVariable String symbol, @PathVariable String interval, @PathVariable String daysOrMonths) {
-        List<CoinTicker> data = binanceService.getTickerData(symbol, interval, daysOrMonths);
-        return data;
+    public ResponseEntity<byte[]> getDayTicker(@PathVariable String symbol, @PathVariable String interval, @PathVariable String daysOrMonths,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        //the response is serialized once, and reused until the candles are reloaded
+        return binanceService.getTickerDataResponse(symbol, interval, daysOrMonths, objectMapper)
+                .toResponseEntity(acceptEncoding, ifNoneMatch, KLINE_MAX_AGE);
     }
 
     @GetMapping(value = "/RsiTicker/{symbol}/{interval}/{daysOrMonths}", produces = MediaType.APPLICATION_JSON_VALUE)
     public List<CoinTicker> getRsiTicker(@PathVariable String symbol, @PathVariable String interval, @PathVariable String daysOrMonths) {
-        List<CoinTicker> data = binanceService.getTickerData(symbol, interval, daysOrMonths);
-        binanceService.setRsiForTickers(data, 22);
+        List<CoinTicker> data = binanceService.getRsiTickerData(symbol, interval, daysOrMonths, 22);
         SandboxUtil util = new SandboxUtil();
         util.createMock("binance-rsiTicker-" + symbol + "-" + interval + "-" + daysOrMonths, data);
         return data;
@@ -0,0 +1,310 @@
+package com.scanner.cryptoserver.exchange.binance.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kline (candlestick) data for a coin, stored as parallel primitive arrays - one array per field.
+ * This is what is kept in the coin cache: a list of coin tickers costs an object per candle plus a boxed value
+ * for each field, whereas here each candle is a slot in each array.
+ * The series is converted to coin tickers only when it is returned to the client.
+ */
+public class CandleSeries {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final String symbol;
+    private int size;
+    private long[] openTime;
+    private long[] closeTime;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private double[] volume;
+    private double[] quoteAssetVolume;
+    //NaN means the USD volume has not been computed for the candle
+    private double[] usdVolume;
+    private int[] numberOfTrades;
+
+    public CandleSeries(String symbol) {
+        this(symbol, DEFAULT_CAPACITY);
+    }
+
+    public CandleSeries(String symbol, int capacity) {
+        this.symbol = symbol;
+        capacity = Math.max(capacity, 1);
+        openTime = new long[capacity];
+        closeTime = new long[capacity];
+        open = new double[capacity];
+        high = new double[capacity];
+        low = new double[capacity];
+        close = new double[capacity];
+        volume = new double[capacity];
+        quoteAssetVolume = new double[capacity];
+        usdVolume = new double[capacity];
+        Arrays.fill(usdVolume, Double.NaN);
+        numberOfTrades = new int[capacity];
+    }
+
+    private void resize(int capacity) {
+        int oldCapacity = openTime.length;
+        openTime = Arrays.copyOf(openTime, capacity);
+        closeTime = Arrays.copyOf(closeTime, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+        quoteAssetVolume = Arrays.copyOf(quoteAssetVolume, capacity);
+        usdVolume = Arrays.copyOf(usdVolume, capacity);
+        if (capacity > oldCapacity) {
+            Arrays.fill(usdVolume, oldCapacity, capacity, Double.NaN);
+        }
+        numberOfTrades = Arrays.copyOf(numberOfTrades, capacity);
+    }
+
+    /**
+     * Add a candle to the end of the series. Candles are expected to be added in close time order.
+     */
+    public void add(long openTime, double open, double high, double low, double close, double volume,
+                    long closeTime, double quoteAssetVolume, int numberOfTrades) {
+        if (size == this.openTime.length) {
+            resize(size * 2);
+        }
+        this.openTime[size] = openTime;
+        this.open[size] = open;
+        this.high[size] = high;
+        this.low[size] = low;
+        this.close[size] = close;
+        this.volume[size] = volume;
+        this.closeTime[size] = closeTime;
+        this.quoteAssetVolume[size] = quoteAssetVolume;
+        this.numberOfTrades[size] = numberOfTrades;
+        size++;
+    }
+
+    /**
+     * Shrink the arrays to the number of candles in the series.
+     * This should be called once the series is complete, before it is put into the cache.
+     *
+     * @return this series.
+     */
+    public CandleSeries trimToSize() {
+        if (size < openTime.length) {
+            resize(Math.max(size, 1));
+        }
+        return this;
+    }
+
+    /**
+     * Merge two series for the same coin into a new series, in close time order.
+     * Each series is expected to be in close time order already, as they are when returned from the exchange.
+     * If both series have a candle with the same close time, such as on the boundary of two calls, it is added once.
+     *
+     * @param first  a series.
+     * @param second another series.
+     * @return the merged series.
+     */
+    public static CandleSeries merge(CandleSeries first, CandleSeries second) {
+        CandleSeries merged = new CandleSeries(first.symbol, first.size + second.size);
+        int i = 0;
+        int j = 0;
+        while (i < first.size || j < second.size) {
+            CandleSeries next;
+            int index;
+            if (j >= second.size || (i < first.size && first.closeTime[i] <= second.closeTime[j])) {
+                next = first;
+                index = i++;
+            } else {
+                next = second;
+                index = j++;
+            }
+            if (merged.size == 0 || merged.closeTime[merged.size - 1] != next.closeTime[index]) {
+                merged.addFrom(next, index);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Add candles from another series to the end of this series.
+     *
+     * @param other     the series to add candles from.
+     * @param fromIndex the index of the first candle to add, inclusive.
+     * @param toIndex   the index of the last candle to add, exclusive.
+     */
+    public void addAll(CandleSeries other, int fromIndex, int toIndex) {
+        for (int index = fromIndex; index < toIndex; index++) {
+            addFrom(other, index);
+        }
+    }
+
+    /**
+     * Copy a range of the candles into a new series.
+     *
+     * @param fromIndex the index of the first candle, inclusive.
+     * @param toIndex   the index of the last candle, exclusive.
+     * @return the new series.
+     */
+    public CandleSeries subSeries(int fromIndex, int toIndex) {
+        CandleSeries series = new CandleSeries(symbol, toIndex - fromIndex);
+        series.addAll(this, fromIndex, toIndex);
+        return series;
+    }
+
+    /**
+     * Find the first candle that opens at or after a time.
+     *
+     * @param time the time, in epoch milliseconds.
+     * @return the index of the candle, or size() if every candle opens before the time.
+     */
+    public int indexOfOpenTime(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (openTime[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the first candle that is not closed at a time - that is, its close time is at or after the time.
+     *
+     * @param time the time, in epoch milliseconds.
+     * @return the index of the candle, or size() if every candle is closed at the time.
+     */
+    public int indexOfCloseTime(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (closeTime[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void addFrom(CandleSeries other, int index) {
+        add(other.openTime[index], other.open[index], other.high[index], other.low[index], other.close[index],
+                other.volume[index], other.closeTime[index], other.quoteAssetVolume[index], other.numberOfTrades[index]);
+        usdVolume[size - 1] = other.usdVolume[index];
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getOpenTime(int index) {
+        return openTime[index];
+    }
+
+    public long getCloseTime(int index) {
+        return closeTime[index];
+    }
+
+    public double getOpen(int index) {
+        return open[index];
+    }
+
+    public double getHigh(int index) {
+        return high[index];
+    }
+
+    public double getLow(int index) {
+        return low[index];
+    }
+
+    public double getClose(int index) {
+        return close[index];
+    }
+
+    public double getVolume(int index) {
+        return volume[index];
+    }
+
+    public double getQuoteAssetVolume(int index) {
+        return quoteAssetVolume[index];
+    }
+
+    public int getNumberOfTrades(int index) {
+        return numberOfTrades[index];
+    }
+
+    /**
+     * @return the USD volume of the candle, or NaN if it has not been computed.
+     */
+    public double getUsdVolume(int index) {
+        return usdVolume[index];
+    }
+
+    public void setUsdVolume(int index, double usdVolume) {
+        this.usdVolume[index] = usdVolume;
+    }
+
+    /**
+     * The close prices, for indicator calculations such as RSI.
+     * Note: the array may be longer than the series - only the first size() values are candles.
+     *
+     * @return the close prices.
+     */
+    public double[] getCloses() {
+        return close;
+    }
+
+    /**
+     * Convert the series into coin tickers, to be returned to the client.
+     *
+     * @return a new list of coin tickers, one for each candle.
+     */
+    public List<CoinTicker> toTickers() {
+        return toTickers(null);
+    }
+
+    /**
+     * Convert the series into coin tickers with the RSI of each candle, to be returned to the client.
+     *
+     * @param rsi the RSI of each candle, as calculated from the close prices - can be null.
+     * @return a new list of coin tickers, one for each candle.
+     */
+    public List<CoinTicker> toTickers(double[] rsi) {
+        List<CoinTicker> tickers = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            CoinTicker ticker = new CoinTicker();
+            ticker.setSymbol(symbol);
+            ticker.setOpenTime(openTime[index]);
+            ticker.setCloseTime(closeTime[index]);
+            ticker.setOpen(open[index]);
+            ticker.setHigh(high[index]);
+            ticker.setLow(low[index]);
+            ticker.setClose(close[index]);
+            ticker.setVolume(volume[index]);
+            ticker.setQuoteAssetVolume(quoteAssetVolume[index]);
+            ticker.setNumberOfTrades(numberOfTrades[index]);
+            if (!Double.isNaN(usdVolume[index])) {
+                ticker.setUsdVolume(usdVolume[index]);
+            }
+            if (rsi != null) {
+                ticker.setRsi(rsi[index]);
+            }
+            tickers.add(ticker);
+        }
+        return tickers;
+    }
+}
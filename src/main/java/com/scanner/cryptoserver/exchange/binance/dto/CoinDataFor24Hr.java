@@ -1,17 +1,19 @@
 package com.scanner.cryptoserver.exchange.binance.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapData;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing;
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.Map;
-import java.util.Optional;
 
 //This data class is used by Kotlin code - therefore Lombok annotations cannot be used.
 public class CoinDataFor24Hr {
+    //the icon is only sent when it is asked for - the 24-hour data has the icon URL instead
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private byte[] icon;
+    private String iconUrl;
     //symbol of the coin, which includes the market (quote) such as LTCUSD, or BTCUSDT
     private String symbol;
     private Integer id;
@@ -40,6 +42,59 @@ public class CoinDataFor24Hr {
         this.icon = icon;
     }
 
+    public String getIconUrl() {
+        return iconUrl;
+    }
+
+    public void setIconUrl(String iconUrl) {
+        this.iconUrl = iconUrl;
+    }
+
+    /**
+     * Create a copy of this coin, such as to fill in a row of 24-hour data that is shared by other callers.
+     *
+     * @return the copy.
+     */
+    public CoinDataFor24Hr copy() {
+        CoinDataFor24Hr copy = new CoinDataFor24Hr();
+        copy.icon = icon;
+        copy.iconUrl = iconUrl;
+        copy.symbol = symbol;
+        copy.id = id;
+        copy.coin = coin;
+        copy.marketCap = marketCap;
+        copy.currency = currency;
+        copy.priceChange = priceChange;
+        copy.priceChangePercent = priceChangePercent;
+        copy.lastPrice = lastPrice;
+        copy.highPrice = highPrice;
+        copy.lowPrice = lowPrice;
+        copy.volume = volume;
+        copy.quoteVolume = quoteVolume;
+        copy.volumeChangePercent = volumeChangePercent;
+        copy.openTime = openTime;
+        copy.closeTime = closeTime;
+        copy.tradeLink = tradeLink;
+        copy.volume24HrUsd = volume24HrUsd;
+        return copy;
+    }
+
+    /**
+     * Create a copy of this coin with only the fields that identify it, and an icon.
+     *
+     * @param icon the icon bytes.
+     * @return the copy.
+     */
+    public CoinDataFor24Hr copyWithIcon(byte[] icon) {
+        CoinDataFor24Hr copy = new CoinDataFor24Hr();
+        copy.setSymbol(symbol);
+        copy.setId(id);
+        copy.setCoin(coin);
+        copy.setCurrency(currency);
+        copy.setIcon(icon);
+        return copy;
+    }
+
     public String getSymbol() {
         return symbol;
     }
@@ -195,18 +250,16 @@ public class CoinDataFor24Hr {
      * @param coinMarketCapListing the coin market cap listing - contains all the coin market cap data.
      */
     public void addMarketCapData(ExchangeVisitor visitor, CoinMarketCapListing coinMarketCapListing) {
-        Optional<CoinMarketCapData> data;
+        CoinMarketCapData data;
         if (id != null) {
-            data = Optional.of(coinMarketCapListing.getData().get(id));
+            data = coinMarketCapListing.findData(id).orElse(null);
         } else {
-            data = coinMarketCapListing.getData().entrySet().stream()
-                    .filter(e -> (e.getValue().isCoin(visitor.getName(this.coin))))
-                    .findAny().map(Map.Entry::getValue);
+            data = coinMarketCapListing.getJoin(visitor).find(this.coin);
+        }
+        if (data != null) {
+            setMarketCap(getNumberFormattedValue(data.getMarketCap()));
+            setId(data.getId());
+            setVolume24HrUsd(getNumberFormattedValue(data.getVolume24HrUsd()));
         }
-        data.ifPresent(coinMarketCapData -> {
-            setMarketCap(getNumberFormattedValue(coinMarketCapData.getMarketCap()));
-            setId(coinMarketCapData.getId());
-            setVolume24HrUsd(getNumberFormattedValue(coinMarketCapData.getVolume24HrUsd()));
-        });
     }
 }
@@ -1,27 +1,42 @@
 package com.scanner.cryptoserver.exchange.binance.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinTicker;
 import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapService;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo;
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.SymbolIndex;
 import com.scanner.cryptoserver.exchange.service.ExchangeService;
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
+import com.scanner.cryptoserver.exchange.service.TickerStream;
 import com.scanner.cryptoserver.util.CacheUtil;
 import com.scanner.cryptoserver.util.RsiCalc;
+import com.scanner.cryptoserver.util.SerializedResponse;
+import com.scanner.cryptoserver.util.SnapshotRefresher;
 import com.scanner.cryptoserver.util.dto.Coin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestOperations;
 
+import javax.annotation.PreDestroy;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -32,34 +47,95 @@ import java.util.stream.Collectors;
 public abstract class AbstractBinanceExchangeService implements ExchangeService {
     private static final Logger Log = LoggerFactory.getLogger(AbstractBinanceExchangeService.class);
     private static final String ALL_24_HOUR_TICKER = "All24HourTicker";
-    private static final String ALL_TICKERS = "AllTickers";
+    private static final String ALL_TICKER_ROWS = "AllTickerRows";
     private static final String EXCHANGE_INFO = "ExchangeInfo";
     private static final String COIN_CACHE = "CoinCache";
-    private static final int ALL_24_HOUR_MAX_COUNT = 6;
-    private static final int ALL_24_HOUR_DELAY = 151;
+    private static final String CANDLE_TIMELINE = "CandleTimeline";
+    //the 24-hour data for all coins is refreshed every minute, while there have been clients asking for it in the last 15 minutes
+    private static final Duration ALL_24_HOUR_REFRESH = Duration.ofMinutes(1);
+    private static final Duration ALL_24_HOUR_DEMAND = Duration.ofMinutes(15);
+    //the klines are retrieved in pages of 500 candles, which is the cheapest page for the number of candles
+    private static final int KLINE_PAGE_LIMIT = 500;
+    private static final int KLINE_PARALLELISM = 4;
+    //the threads that retrieve the kline pages for all the requests - enough for two requests' pages at a time
+    private static final int KLINE_THREADS = 2 * KLINE_PARALLELISM;
+    //at a weight of 2 for each page, this allows up to 10 pages (5000 candles) for a request, such as "1h" over six months
+    private static final int KLINE_WEIGHT_BUDGET = 20;
+    //Binance allows 1200 request weight a minute for an IP address - some of this is left for other callers from the same IP
+    private static final int REQUEST_WEIGHT_PER_MINUTE = 1000;
+    private static final long MAX_RATE_LIMIT_WAIT_MILLIS = 10_000;
     private static final List<String> nonUsaMarkets = Arrays.asList("NGN", "RUB", "TRY", "EUR", "ZAR", "BKRW", "IDRT", "UAH", "BIDR", "GBP", "AUD");
 
     private final RestOperations restTemplate;
     private final CoinMarketCapService coinMarketCapService;
     private final CacheUtil cacheUtil;
     private final ExchangeVisitor binanceExchangeVisitor;
-
-    public AbstractBinanceExchangeService(RestOperations restTemplate, CoinMarketCapService coinMarketCapService, CacheUtil cacheUtil, ExchangeVisitor binanceExchangeVisitor) {
+    private final BinanceRateLimiter rateLimiter;
+    private final BinanceResponseParser responseParser = new BinanceResponseParser();
+    //the kline pages are retrieved on threads of their own, since each call blocks on the exchange and on the rate limiter
+    private final ExecutorService klineExecutor = Executors.newFixedThreadPool(KLINE_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, getExchangeName() + "-klines");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final KlineFetcher klineFetcher = new KlineFetcher(this::callCoinTicker, klineExecutor, KLINE_PAGE_LIMIT, KLINE_PARALLELISM, KLINE_WEIGHT_BUDGET);
+    private final SnapshotRefresher<List<CoinDataFor24Hr>> allCoinTickerRefresher;
+    private final TickerStream allCoinTickerStream;
+    //the serialized ticker data for each symbol, interval and days or months - reused until the candles are reloaded
+    private final ConcurrentMap<String, AtomicReference<SerializedResponse>> tickerDataResponses = new ConcurrentHashMap<>();
+
+    public AbstractBinanceExchangeService(RestOperations restTemplate, CoinMarketCapService coinMarketCapService, CacheUtil cacheUtil, ExchangeVisitor binanceExchangeVisitor,
+                                          ObjectMapper objectMapper) {
         this.restTemplate = restTemplate;
+        //each exchange has its own limit, so each exchange service has its own rate limiter
+        this.rateLimiter = new BinanceRateLimiter(getExchangeName(), REQUEST_WEIGHT_PER_MINUTE, MAX_RATE_LIMIT_WAIT_MILLIS);
         this.coinMarketCapService = coinMarketCapService;
         this.cacheUtil = cacheUtil;
         this.binanceExchangeVisitor = binanceExchangeVisitor;
+        this.allCoinTickerRefresher = new SnapshotRefresher<>(getExchangeName() + "-" + ALL_24_HOUR_TICKER,
+                this::get24HrCoinData, ALL_24_HOUR_REFRESH, ALL_24_HOUR_DEMAND);
+        this.allCoinTickerStream = new TickerStream(getExchangeName() + "-" + ALL_24_HOUR_TICKER, allCoinTickerRefresher, objectMapper);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        allCoinTickerStream.shutdown();
+        allCoinTickerRefresher.shutdown();
+        klineExecutor.shutdownNow();
     }
 
     @Override
     public Supplier<ExchangeInfo> getExchangeInfoSupplier() {
         return () -> {
-            ResponseEntity<ExchangeInfo> response = restTemplate.getForEntity(getUrlExtractor().getExchangeInfoUrl(), ExchangeInfo.class);
+            ResponseEntity<ExchangeInfo> response;
+            try (BinanceRateLimiter.Reservation reservation = rateLimiter.acquire(BinanceRateLimiter.EXCHANGE_INFO_WEIGHT)) {
+                try {
+                    response = restTemplate.getForEntity(getUrlExtractor().getExchangeInfoUrl(), ExchangeInfo.class);
+                } catch (HttpStatusCodeException e) {
+                    reservation.update(e.getStatusCode(), e.getResponseHeaders());
+                    throw e;
+                }
+                reservation.update(response.getHeaders());
+            }
             ExchangeInfo info = response.getBody();
-            return info;
+            return info == null ? null : createSnapshot(info);
         };
     }
 
+    /**
+     * Create the exchange info snapshot that is put in the cache: filtered to the USA-based markets, with the index built,
+     * and with the market caps if the coin market cap listing is in the cache.
+     *
+     * @param info the exchange info.
+     * @return the snapshot.
+     */
+    private ExchangeInfo createSnapshot(ExchangeInfo info) {
+        ExchangeInfo snapshot = ExchangeInfo.snapshotOf(info.getCoins(), nonUsaMarkets);
+        //only the cached listing is used here - getting a new listing needs the exchange info that is being loaded
+        CoinMarketCapListing listing = coinMarketCapService.getCachedCoinMarketCapListing();
+        return listing == null ? snapshot : snapshot.withMarketCaps(getExchangeVisitor(), listing, nonUsaMarkets);
+    }
+
     /**
      * Get exchange information. Gets the information out of the cache if in there.
      *
@@ -69,254 +145,227 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
     public ExchangeInfo retrieveExchangeInfoFromCache() {
         String name = getExchangeName() + "-" + EXCHANGE_INFO;
         ExchangeInfo exchangeInfo = cacheUtil.retrieveFromCache(EXCHANGE_INFO, name, getExchangeInfoSupplier());
+        if (exchangeInfo != null && !exchangeInfo.isSnapshot()) {
+            //this wasn't loaded by the supplier (for example, it was loaded from the cache snapshot file on startup):
+            //replace it with a snapshot, so that this is only done once
+            exchangeInfo = createSnapshot(exchangeInfo);
+            cacheUtil.putInCache(EXCHANGE_INFO, name, exchangeInfo);
+        }
         return exchangeInfo;
     }
 
+    /**
+     * Get the symbol index of the exchange info in the cache.
+     *
+     * @return the symbol index.
+     */
+    private SymbolIndex getSymbolIndex() {
+        return retrieveExchangeInfoFromCache().getIndex(nonUsaMarkets);
+    }
+
     @Override
     public ExchangeVisitor getExchangeVisitor() {
         return binanceExchangeVisitor;
     }
 
-    private void setMarketCapForExchangeInfo(ExchangeInfo exchangeInfo) {
-        CoinMarketCapListing coinMarketCap = coinMarketCapService.getCoinMarketCapListing(getExchangeVisitor());
-
-        if (coinMarketCap != null) {
-            //If the coin market cap data exists, then update each symbol with the market cap value found in the market cap data.
-            exchangeInfo.getCoins().forEach(symbol -> symbol.addMarketCapAndId(getExchangeVisitor(), coinMarketCap));
-        }
+    /**
+     * Set the market cap and id of the coins in the exchange info. The exchange info in the cache is replaced
+     * with a new snapshot that has the market caps - the snapshot that other threads may be reading is not changed.
+     *
+     * @param coinMarketCap the coin market cap listing.
+     * @return the new exchange info snapshot.
+     */
+    public ExchangeInfo setMarketCaps(CoinMarketCapListing coinMarketCap) {
+        ExchangeInfo exchangeInfo = retrieveExchangeInfoFromCache().withMarketCaps(getExchangeVisitor(), coinMarketCap, nonUsaMarkets);
+        cacheUtil.putInCache(EXCHANGE_INFO, getExchangeName() + "-" + EXCHANGE_INFO, exchangeInfo);
+        return exchangeInfo;
     }
 
     /**
      * Get exchange information. Gets the information out of the cache if in there.
-     * Sets some information in the exchange info for the coins (symbols) in it.
+     * The market cap is set for the coins (symbols) in it.
      *
      * @return The exchange information.
      */
     public ExchangeInfo getExchangeInfo() {
-        ExchangeInfo exchangeInfo = getExchangeInfoWithoutMarketCap();
-        setMarketCapForExchangeInfo(exchangeInfo);
+        ExchangeInfo exchangeInfo = retrieveExchangeInfoFromCache();
+        if (exchangeInfo != null && !exchangeInfo.isMarketCapsSet()) {
+            //the coin market cap listing wasn't ready when the exchange info was loaded - set the market caps now, if it is
+            CoinMarketCapListing coinMarketCap = coinMarketCapService.getCachedCoinMarketCapListing();
+            if (coinMarketCap != null) {
+                exchangeInfo = setMarketCaps(coinMarketCap);
+            }
+        }
         return exchangeInfo;
     }
 
     /**
      * Get exchange information. Gets the information out of the cache if in there.
      * Does NOT make a call to supply the market cap info - when the exchange info is in the cache, the market cap is already set.
+     * The non-USA markets, such as the Euro ("EUR"), are already removed from the exchange info in the cache.
      *
      * @return The exchange information.
      */
     public ExchangeInfo getExchangeInfoWithoutMarketCap() {
-        ExchangeInfo exchangeInfo = retrieveExchangeInfoFromCache();
-        //remove currency markets that are not USA-based, such as the Euro ("EUR")
-        exchangeInfo.getCoins().removeIf(s -> nonUsaMarkets.contains(s.getQuoteAsset()));
-        return exchangeInfo;
+        return retrieveExchangeInfoFromCache();
     }
 
     public Set<String> getMarkets() {
-        ExchangeInfo exchangeInfo = retrieveExchangeInfoFromCache();
-        Set<String> set = exchangeInfo.getCoins().stream().map(Coin::getQuoteAsset).collect(Collectors.toSet());
-        return set;
+        return new HashSet<>(getSymbolIndex().getQuoteAssets());
     }
 
     public List<CoinTicker> getCoinTicker(String symbol, String interval) {
-        return callCoinTicker(symbol, interval, null, null);
+        return callCoinTicker(symbol, interval, null, null).toTickers();
     }
 
     public Optional<CoinDataFor24Hr> get24HourCoinData(String symbol) {
         String url = getUrlExtractor().getTickerUrl() + "/24hr?symbol={symbol}";
         Map<String, Object> params = new HashMap<>();
         params.put("symbol", symbol);
-        ResponseEntity<LinkedHashMap> info = restTemplate.getForEntity(url, LinkedHashMap.class, params);
-        LinkedHashMap body = info.getBody();
+        CoinDataFor24Hr body = callExchange(BinanceRateLimiter.TICKER_24HR_WEIGHT, url,
+                response -> responseParser.parse24HrTicker(response.getBody()), params);
         if (body == null) {
             return Optional.empty();
         }
         final Optional<CoinDataFor24Hr> ticker = get24HrCoinTicker(body);
-        ticker.ifPresent(c -> coinMarketCapService.setMarketCapDataFor24HrData(getExchangeVisitor(), c));
+        ticker.ifPresent(c -> {
+            coinMarketCapService.setMarketCapDataFor24HrData(getExchangeVisitor(), c);
+            setIconUrl(c);
+        });
         return ticker;
     }
 
     /**
-     * Get a coin from a symbol string. i.e. "BTCUSD" returns the coin for the BTC/USD pair.
+     * Make a GET call to the exchange. The weight of the call is taken from the rate limiter first,
+     * and the rate limiter is resynced with the used weight that the exchange returns.
      *
-     * @param str the symbol, such as "ETHUSDT".
-     * @return the coin from the symbol.
+     * @param weight    the request weight of the call.
+     * @param url       the url template.
+     * @param extractor reads the response body.
+     * @param params    the url template parameters.
+     * @param <T>       the type of the response.
+     * @return the response, as read by the extractor.
      */
-    public Optional<Coin> getCoin(String str) {
-        ExchangeInfo exchangeInfo = retrieveExchangeInfoFromCache();
-        final Optional<Coin> coin = exchangeInfo.getCoins().stream()
-                .filter(sym -> sym.getSymbol() != null && sym.getSymbol().equals(str))
-                .findFirst();
-        return coin;
+    private <T> T callExchange(int weight, String url, ResponseExtractor<T> extractor, Map<String, ?> params) {
+        //the reservation is closed when the call fails without a response, such as when the connection fails
+        try (BinanceRateLimiter.Reservation reservation = rateLimiter.acquire(weight)) {
+            try {
+                return restTemplate.execute(url, HttpMethod.GET, null, response -> {
+                    reservation.update(response.getHeaders());
+                    return extractor.extractData(response);
+                }, params);
+            } catch (HttpStatusCodeException e) {
+                //a 429 or 418 means we need to back off
+                reservation.update(e.getStatusCode(), e.getResponseHeaders());
+                throw e;
+            }
+        }
     }
 
     /**
-     * Exclude coins that are not currently trading, but exist on the exchange.
+     * Get a coin from a symbol string. i.e. "BTCUSD" returns the coin for the BTC/USD pair.
      *
-     * @param symbol the coin, such as BTCUSDT.
-     * @return true if the coin is actively trading, false otherwise.
+     * @param str the symbol, such as "ETHUSDT".
+     * @return the coin from the symbol.
      */
-    private boolean isCoinTrading(String symbol) {
-        ExchangeInfo info = retrieveExchangeInfoFromCache();
-        boolean trading = info.getCoins().stream()
-                .anyMatch(coin -> coin.getSymbol().equals(symbol) && coin.isTrading());
-        return trading;
+    public Optional<Coin> getCoin(String str) {
+        return getSymbolIndex().getCoin(str);
     }
 
-    private boolean isCoinInUsaMarket(String currency) {
-        return !nonUsaMarkets.contains(currency);
+    private Optional<CoinDataFor24Hr> get24HrCoinTicker(CoinDataFor24Hr data) {
+        return get24HrCoinTicker(data, getSymbolIndex());
     }
 
-    private Optional<CoinDataFor24Hr> get24HrCoinTicker(LinkedHashMap map) {
-        CoinDataFor24Hr data = new CoinDataFor24Hr();
-        String symbol = (String) map.get("symbol");
-        final Optional<Coin> coin = getCoin(symbol);
-        String baseAsset = coin.map(Coin::getBaseAsset).orElse("");
-        String quoteAsset = coin.map(Coin::getQuoteAsset).orElse("");
-        if (!isCoinTrading(symbol) || !isCoinInUsaMarket(quoteAsset)) {
+    /**
+     * Complete the 24-hour data parsed from the exchange for a coin.
+     *
+     * @param data  the 24-hour data for a coin, as parsed from the exchange.
+     * @param index the symbol index of the exchange info.
+     * @return the completed data, or empty if the coin should be excluded.
+     */
+    private Optional<CoinDataFor24Hr> get24HrCoinTicker(CoinDataFor24Hr data, SymbolIndex index) {
+        String symbol = data.getSymbol();
+        //exclude coins that are not currently trading (but exist on the exchange), or are not in a USA-based market
+        if (!index.isTradingInUsaMarket(symbol)) {
             return Optional.empty();
         }
+        final Optional<Coin> coin = index.getCoin(symbol);
+        String baseAsset = coin.map(Coin::getBaseAsset).orElse("");
+        String quoteAsset = coin.map(Coin::getQuoteAsset).orElse("");
 
-        data.setSymbol(symbol);
         data.setCoin(baseAsset);
         data.setCurrency(quoteAsset);
 
-        String priceChangeStr = (String) map.get("priceChange");
-        double priceChange = Double.parseDouble(priceChangeStr);
-        data.setPriceChange(priceChange);
-
-        String priceChangePercentStr = (String) map.get("priceChangePercent");
-        double priceChangePercent = Double.parseDouble(priceChangePercentStr);
-        data.setPriceChangePercent(priceChangePercent);
-        NumberFormat nf = new DecimalFormat("##.##");
-        priceChangePercent = Double.parseDouble(nf.format(priceChangePercent));
-        data.setPriceChangePercent(priceChangePercent);
-
-        String lastPriceStr = (String) map.get("lastPrice");
-        double lastPrice = Double.parseDouble(lastPriceStr);
-        data.setLastPrice(lastPrice);
-
-        String highPriceStr = (String) map.get("highPrice");
-        double highPrice = Double.parseDouble(highPriceStr);
-        data.setHighPrice(highPrice);
-
-        String lowPriceStr = (String) map.get("lowPrice");
-        double lowPrice = Double.parseDouble(lowPriceStr);
-        data.setLowPrice(lowPrice);
-
-        String volumeStr = (String) map.get("volume");
-        double volume = Double.parseDouble(volumeStr);
-        data.setVolume(volume);
-
-        String quoteVolumeStr = (String) map.get("quoteVolume");
-        double quoteVolume = Double.parseDouble(quoteVolumeStr);
-        data.setQuoteVolume(quoteVolume);
-
-        Long openTime = (Long) map.get("openTime");
-        data.setOpenTime(openTime);
-
-        Long closeTime = (Long) map.get("closeTime");
-        data.setCloseTime(closeTime);
+        if (data.getPriceChangePercent() != null) {
+            NumberFormat nf = new DecimalFormat("##.##");
+            double priceChangePercent = Double.parseDouble(nf.format(data.getPriceChangePercent()));
+            data.setPriceChangePercent(priceChangePercent);
+        }
 
         data.setupLinks(getUrlExtractor().getTradeUrl());
-        byte[] iconBytes = cacheUtil.getIconBytes(getExchangeVisitor().getSymbol(baseAsset), null);
-        data.setIcon(iconBytes);
 
         return Optional.of(data);
     }
 
-    private List<CoinTicker> callCoinTicker(String symbol, String interval,
-                                            long startTime1, long toTime1, long startTime2, long toTime2) {
-        List<CoinTicker> coinTickers = new ArrayList<>();
+    /**
+     * Set the URL of the coin icon. The icon is sent separately (and cached by the client), so that it isn't in every response.
+     * This is called once the market cap data has been set, so that the coin market cap id is there for the coins
+     * that only have an icon by their id.
+     *
+     * @param data the 24-hour data for a coin.
+     */
+    private void setIconUrl(CoinDataFor24Hr data) {
+        data.setIconUrl(cacheUtil.getIconUrl(getExchangeVisitor().getSymbol(data.getCoin()), data.getId()));
+    }
 
-        if (startTime2 != 0 && toTime2 != 0) {
-            CompletableFuture<List<CoinTicker>> call1 = CompletableFuture.supplyAsync(() -> callCoinTicker(symbol, interval, startTime1, toTime1));
-            CompletableFuture<List<CoinTicker>> call2 = CompletableFuture.supplyAsync(() -> callCoinTicker(symbol, interval, startTime2, toTime2));
-            CompletableFuture<Void> allCalls = CompletableFuture.allOf(call1, call2);
-            allCalls.thenRun(() -> {
-                try {
-                    coinTickers.addAll(call1.get());
-                    coinTickers.addAll(call2.get());
-                    //sort the list - since they are run asynchronously, to ensure the final list is in order
-                    coinTickers.sort(Comparator.comparingLong(CoinTicker::getCloseTime));
-                } catch (InterruptedException | ExecutionException e) {
-                    Log.error("Error: {} " + e.getMessage());
-                }
-            }).join();
-        } else {
-            coinTickers.addAll(callCoinTicker(symbol, interval, startTime1, toTime1));
-        }
-        return coinTickers;
+    public CandleSeries callCoinTicker(String symbol, String interval, Long startTime, Long endTime) {
+        return callCoinTicker(symbol, interval, startTime, endTime, null);
     }
 
-    public List<CoinTicker> callCoinTicker(String symbol, String interval, Long startTime, Long endTime) {
+    private CandleSeries callCoinTicker(String symbol, String interval, Long startTime, Long endTime, Integer limit) {
         if (interval.equals("24h")) {
             interval = "1d";
         }
         if (interval.equals("72h")) {
             interval = "3d";
         }
-        String url = getUrlExtractor().getKlinesUrl() + "?symbol={symbol}&interval={interval}";
+        StringBuilder url = new StringBuilder(getUrlExtractor().getKlinesUrl()).append("?symbol={symbol}&interval={interval}");
         Map<String, Object> params = new HashMap<>();
         params.put("symbol", symbol);
         params.put("interval", interval);
         if (startTime != null) {
             params.put("startTime", startTime);
-            String symbolTickerTimeParams = "&startTime={startTime}&endTime={endTime}";
-            url += symbolTickerTimeParams;
+            url.append("&startTime={startTime}");
         }
         if (endTime != null) {
             params.put("endTime", endTime);
+            url.append("&endTime={endTime}");
         }
-        ResponseEntity<Object[]> info = restTemplate.getForEntity(url, Object[].class, params);
-        Object[] body = info.getBody();
-        if (body == null) {
-            return new ArrayList<>();
+        if (limit != null) {
+            params.put("limit", limit);
+            url.append("&limit={limit}");
         }
-
-        List<CoinTicker> values = new ArrayList<>();
-        for (Object obj : body) {
-            List<Object> list = (List<Object>) obj;
-            CoinTicker coinTicker = new CoinTicker();
-            coinTicker.setSymbol(symbol);
-            coinTicker.setOpenTime((Long) list.get(0));
-            coinTicker.setOpen(Double.valueOf((String) list.get(1)));
-            coinTicker.setHigh(Double.valueOf((String) list.get(2)));
-            coinTicker.setLow(Double.valueOf((String) list.get(3)));
-            coinTicker.setClose(Double.valueOf((String) list.get(4)));
-            coinTicker.setVolume(Double.valueOf((String) list.get(5)));
-            coinTicker.setCloseTime((Long) list.get(6));
-            coinTicker.setQuoteAssetVolume(Double.valueOf((String) list.get(7)));
-            coinTicker.setNumberOfTrades((int) list.get(8));
-            values.add(coinTicker);
-        }
-        return values;
+        //parse the response body as it is read - this avoids creating a list of lists for the klines
+        int weight = KlineFetcher.getPageWeight(limit == null ? KLINE_PAGE_LIMIT : limit);
+        CandleSeries series = callExchange(weight, url.toString(),
+                response -> responseParser.parseKlines(response.getBody(), symbol), params);
+        return series == null ? new CandleSeries(symbol) : series;
     }
 
     /**
      * Call the coin ticker for the symbol using the interval over the days/months specified.
+     * If there are more candles than the exchange returns for a call, then the candles are retrieved in pages.
      *
      * @param symbol       The coin, such as "LTCUSDT".
      * @param interval     The interval string such as "12h" (12 hours).
      * @param daysOrMonths The days or months string, such as "30d" (thirty days) or "3m" (three months).
-     * @return The coin tickers for the interval and period specified.
+     * @return The candles for the interval and period specified.
      */
-    public List<CoinTicker> callCoinTicker(String symbol, String interval, String daysOrMonths) {
+    public CandleSeries callCoinTicker(String symbol, String interval, String daysOrMonths) {
         Instant now = Instant.now();
-        Instant from;
-        long startTime1;
-        long toTime1 = now.toEpochMilli();
-        long startTime2 = 0;
-        long toTime2 = 0;
-
-        if (daysOrMonths.endsWith("d")) {
-            int numDays = Integer.parseInt("" + daysOrMonths.charAt(0));
-            from = now.minus(numDays, ChronoUnit.DAYS);
-            startTime1 = from.toEpochMilli();
-        } else {
-            return callCoinTickerForMonths(symbol, interval, daysOrMonths);
-        }
-        List<CoinTicker> coinTickers = callCoinTicker(symbol, interval, startTime1, toTime1, startTime2, toTime2);
-        return coinTickers;
+        //we use lower-case letters for hours, and upper-case letters for months (to distinguish from Minutes ("m") if we ever use it)
+        interval = interval.replace("H", "h");
+        return klineFetcher.fetch(symbol, interval, getWindowStart(daysOrMonths, now), now.toEpochMilli());
     }
 
     /**
@@ -331,123 +380,145 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
         return Math.toIntExact(ChronoUnit.DAYS.between(start, now));
     }
 
-    /**
-     * Call the monthly coin ticker for the symbol using the interval and months.
-     *
-     * @param symbol   The coin, such as "BTCUSD".
-     * @param interval The interval string, such as "4h" (4 hours).
-     * @param months   The months string, such as "3M".
-     * @return The coin tickers for the month period using the interval.
-     */
-    private List<CoinTicker> callCoinTickerForMonths(String symbol, String interval, String months) {
-        final int hoursInDay = 24;
-        final int maxDataPoints = 500;
-        Instant now = Instant.now();
-        Instant from;
-        long toTime1 = now.toEpochMilli();
-        long startTime1;
-        long startTime2 = 0;
-        long toTime2 = 0;
-        //we use lower-case letters for hours, and upper-case letters for months (to distinguish from Minutes ("m") if we ever use it)
-        interval = interval.replace("H", "h");
-        months = months.replace("m", "M");
-        int hours = Integer.parseInt(interval.substring(0, interval.indexOf("h")));
-        int numMonths = Integer.parseInt("" + months.substring(0, months.indexOf("M")));
-        int numberOfDays = getDaysBetween(numMonths);
-        int numDataPoints = numberOfDays * hoursInDay / hours;
-
-        //we want at most 2 calls in parallel - this is too prevent calling the binance server too much and getting rejected
-        if (numDataPoints > maxDataPoints * 2) {
-            String message = String.format("Too much data requested for %s with interval %s and months %s", symbol, interval, months);
-            throw new RuntimeException(message);
-        }
-
-        from = now.minus(numberOfDays, ChronoUnit.DAYS);
-        //If the number of data points required > 500, then we need two calls.
-        //This is because the Binance.us api only brings back 500 data points, but more than that are needed.
-        //Therefore, two calls are needed - go back 15 days for one call, then 15 to 30 days for the other call.
-        //Then, combine the results from the two calls, sorting on the close time.
-        if (numDataPoints >= maxDataPoints) {
-            int midpoint = numberOfDays / 2;
-            Instant fromMidpoint = now.minus(midpoint, ChronoUnit.DAYS);
-            startTime1 = fromMidpoint.toEpochMilli();
-            startTime2 = from.toEpochMilli();
-            toTime2 = startTime1;
-        } else {
-            startTime1 = from.toEpochMilli();
-        }
-        List<CoinTicker> coinTickers = callCoinTicker(symbol, interval, startTime1, toTime1, startTime2, toTime2);
-        return coinTickers;
-    }
-
     /**
      * Add the $USD volume to the coins.
      * Note: In some cases, the USD volume value is not available,
      * and the USDT (an extremely close approximation to USD) was used
      * to compute the USD value.
      *
-     * @param coins      the coins that are being retrieved.
-     * @param usdTickers the coins that contain the USD volume value.
+     * @param coins      the candles of the coin that are being retrieved.
+     * @param usdTickers the candles that contain the USD volume value.
      */
-    void addUsdVolume(List<CoinTicker> coins, List<CoinTicker> usdTickers) {
-        for (int index = 0; index < coins.size(); index++) {
-            if (index < usdTickers.size()) {
-                CoinTicker usdTicker = usdTickers.get(index);
-                CoinTicker coinTicker = coins.get(index);
-                double usdOpen = usdTicker.getOpen();
-                double usdClose = usdTicker.getClose();
-                double coinOpen = coinTicker.getOpen();
-                double coinClose = coinTicker.getClose();
-                //the USD volume is computed as the coin price * the usd price at open + the coin price * the usd price at close divided by 2
-                double avg = (usdOpen * coinOpen + usdClose * coinClose) / 2.0;
-                double vol = coinTicker.getVolume() * avg;
-                coins.get(index).setUsdVolume(vol);
-            }
+    void addUsdVolume(CandleSeries coins, CandleSeries usdTickers) {
+        int size = Math.min(coins.size(), usdTickers.size());
+        for (int index = 0; index < size; index++) {
+            double usdOpen = usdTickers.getOpen(index);
+            double usdClose = usdTickers.getClose(index);
+            double coinOpen = coins.getOpen(index);
+            double coinClose = coins.getClose(index);
+            //the USD volume is computed as the coin price * the usd price at open + the coin price * the usd price at close divided by 2
+            double avg = (usdOpen * coinOpen + usdClose * coinClose) / 2.0;
+            double vol = coins.getVolume(index) * avg;
+            coins.setUsdVolume(index, vol);
         }
     }
 
     @Override
     public List<CoinTicker> getTickerData(String symbol, String interval, String daysOrMonths) {
         final Optional<Coin> coin = getCoin(symbol);
-        return coin.map(theCoin -> getTickerData(theCoin, interval, daysOrMonths))
+        return coin.map(theCoin -> getCandleSeries(theCoin, interval, daysOrMonths))
+                .map(CandleSeries::toTickers)
                 .orElse(Collections.emptyList());
     }
 
-    private List<CoinTicker> getTickerData(Coin coin, String interval, String daysOrMonths) {
+    @Override
+    public SerializedResponse getTickerDataResponse(String symbol, String interval, String daysOrMonths, ObjectMapper objectMapper) {
+        Optional<Coin> coin = getCoin(symbol);
+        if (!coin.isPresent()) {
+            return SerializedResponse.create(objectMapper, Collections.emptyList());
+        }
+        //the cached series are replaced when the candles are reloaded - the tickers are only made and serialized again
+        //when the coin's series, or the USD series its USD volume comes from, has been reloaded
+        List<CandleSeries> sources = new ArrayList<>();
+        CandleSeries series = getCandleSeries(coin.get(), interval, daysOrMonths, sources);
+        String name = getExchangeName() + "-" + symbol + interval + daysOrMonths;
+        AtomicReference<SerializedResponse> latest = tickerDataResponses.computeIfAbsent(name, key -> new AtomicReference<>());
+        return SerializedResponse.get(objectMapper, latest, sources, () -> series == null ? Collections.emptyList() : series.toTickers());
+    }
+
+    private CandleSeries getCandleSeries(Coin coin, String interval, String daysOrMonths) {
+        return getCandleSeries(coin, interval, daysOrMonths, new ArrayList<>());
+    }
+
+    /**
+     * Get the candles of a coin, with the USD volume.
+     *
+     * @param coin         the coin.
+     * @param interval     the interval, such as "12h".
+     * @param daysOrMonths the days or months, such as "7d" or "3M".
+     * @param sources      the cached series that the candles come from are added to this list.
+     * @return the candles, or null if there are none.
+     */
+    private CandleSeries getCandleSeries(Coin coin, String interval, String daysOrMonths, List<CandleSeries> sources) {
         //Attempt to get the data out of the cache if it is in there.
         //If not in the cache, then call the service and add the data to the cache.
         //The data in the cache will expire according to the setup in the CachingConfig configuration.
         String name = getExchangeName() + "-" + coin.getSymbol() + interval + daysOrMonths;
-        Supplier<List<CoinTicker>> coinTickerSupplier = () -> callCoinTicker(coin.getSymbol(), interval, daysOrMonths);
-        List<CoinTicker> coins = cacheUtil.retrieveFromCache(COIN_CACHE, name, coinTickerSupplier);
+        Supplier<CandleSeries> coinTickerSupplier = () -> getWindowFromTimeline(coin.getSymbol(), interval, daysOrMonths);
+        CandleSeries coins = cacheUtil.retrieveFromCache(COIN_CACHE, name, coinTickerSupplier);
         if (coins == null || coins.isEmpty()) {
-            return new ArrayList<>();
+            return null;
         }
+        sources.add(coins);
         //Here, we want the USD volume.
         String quote = coin.getQuoteAsset();
         if (quote.equals("USD") || quote.equals("USDT")) {
             return coins;
         }
-        //Find the USD volume, and add it to the list.
-        final ExchangeInfo exchangeInfo = getExchangeInfo();
+        //Find the USD volume, and add it to the series.
         final String usdSymbol = quote + getUsdQuote();
         //We need the USD or USDT pair of the quote coin in order to get the USD price in order to compute the USD volume for the tickers.
         //For example, if the coin is ETHBTC, then we need to get the USD ticker values for BTCUSD (or BTCUSDT) in order to get the
         //USD prices over the interval to compute the USD volume for ETHBTC over the interval.
         //If that pair doesn't exist for some reason, then just ignore the USD volume.
-        exchangeInfo.getCoins().stream().filter(exchangeCoin -> exchangeCoin.getSymbol().equals(usdSymbol)).findAny().ifPresent(usdPair -> {
-            List<CoinTicker> dollarTickers = getTickerData(usdSymbol, interval, daysOrMonths);
-            addUsdVolume(coins, dollarTickers);
-        });
+        getCoin(usdSymbol)
+                .map(usdCoin -> getCandleSeries(usdCoin, interval, daysOrMonths, sources))
+                .ifPresent(dollarTickers -> addUsdVolume(coins, dollarTickers));
         return coins;
     }
 
+    /**
+     * Get the candles for the days/months up to now, using the timeline of closed candles for the symbol and interval.
+     * Only the candles that are not in the timeline yet (usually just the open candle) are retrieved from the exchange.
+     *
+     * @param symbol       The coin, such as "LTCUSDT".
+     * @param interval     The interval string such as "12h" (12 hours).
+     * @param daysOrMonths The days or months string, such as "7d" (seven days) or "3m" (three months).
+     * @return The candles for the interval and period specified.
+     */
+    private CandleSeries getWindowFromTimeline(String symbol, String interval, String daysOrMonths) {
+        Instant now = Instant.now();
+        String name = getExchangeName() + "-" + symbol + interval;
+        CandleTimeline timeline = cacheUtil.retrieveFromCache(CANDLE_TIMELINE, name, () -> new CandleTimeline(symbol));
+        if (timeline == null) {
+            return callCoinTicker(symbol, interval, daysOrMonths);
+        }
+        return timeline.getWindow(getWindowStart(daysOrMonths, now), now.toEpochMilli(),
+                () -> callCoinTicker(symbol, interval, daysOrMonths),
+                (startTime, endTime) -> klineFetcher.fetch(symbol, interval, startTime, endTime));
+    }
+
+    /**
+     * Get the start of the window for the days or months up to a time.
+     *
+     * @param daysOrMonths The days or months string, such as "7d" (seven days) or "3m" (three months).
+     * @param now          The end of the window.
+     * @return The start of the window, in epoch milliseconds.
+     */
+    long getWindowStart(String daysOrMonths, Instant now) {
+        if (daysOrMonths.endsWith("d")) {
+            int numDays = Integer.parseInt("" + daysOrMonths.charAt(0));
+            return now.minus(numDays, ChronoUnit.DAYS).toEpochMilli();
+        }
+        String months = daysOrMonths.replace("m", "M");
+        int numMonths = Integer.parseInt(months.substring(0, months.indexOf("M")));
+        return now.minus(getDaysBetween(numMonths), ChronoUnit.DAYS).toEpochMilli();
+    }
+
     @Override
     public void setRsiForTickers(List<CoinTicker> tickers, int periodLength) {
         RsiCalc rsiCalc = new RsiCalc();
         rsiCalc.calculateRsiForTickers(tickers, periodLength);
     }
 
+    @Override
+    public List<CoinTicker> getRsiTickerData(String symbol, String interval, String daysOrMonths, int periodLength) {
+        //the RSI is calculated from the close prices of the series, and set as the tickers are made
+        return getCoin(symbol).map(coin -> getCandleSeries(coin, interval, daysOrMonths))
+                .map(series -> series.toTickers(new RsiCalc().calculateRsi(series, periodLength)))
+                .orElse(Collections.emptyList());
+    }
+
     @Override
     public List<CoinTicker> getRsiTickerData(List<String> symbols) {
         List<CoinTicker> list = new ArrayList<>();
@@ -467,35 +538,54 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
         return list;
     }
 
-    //The cache keeps data as defined in the Cache config. When the data in the cache expires, the call
-    //to extract new data will take place here. This will suffice for now, as the solution is new,
-    //but if the solution and website ever grows, a new solution will be needed. We would need to create a running
-    //thread that extracts data from the exchange api service frequently: for example, once a minute or so.
-    //For now, we do one-minute extractions from the api over a 15-minute interval.
-    //Since this solution now is just for "starters" and is just a "show and tell" type of solution, we
-    //will avoid calling the exchange api frequently (i.e. once a minute always) for now.
+    /**
+     * Get the 24-hour data for all the coins on the exchange.
+     * This is a snapshot that is refreshed in the background while clients are asking for it,
+     * so this does not wait for the exchange (except for the first time).
+     *
+     * @return the 24-hour data for all the coins.
+     */
     public List<CoinDataFor24Hr> get24HrAllCoinTicker() {
-        String cacheName = getExchangeName() + "-" + ALL_24_HOUR_TICKER;
-        Supplier<List<CoinDataFor24Hr>> allCoinTicker = this::get24HrCoinData;
-        List<CoinDataFor24Hr> coinDataFor24Hrs = cacheUtil.retrieveFromCache(cacheName, ALL_TICKERS, allCoinTicker);
-        return coinDataFor24Hrs;
+        return allCoinTickerRefresher.get();
+    }
+
+    @Override
+    public TickerStream get24HrAllCoinTickerStream() {
+        return allCoinTickerStream;
+    }
+
+    @Override
+    public Duration get24HrAllCoinTickerMaxAge() {
+        return allCoinTickerRefresher.getTimeToNextRefresh();
+    }
+
+    public SnapshotRefresher<List<CoinDataFor24Hr>> get24HrAllCoinTickerRefresher() {
+        return allCoinTickerRefresher;
     }
 
     public List<CoinDataFor24Hr> get24HrAllCoinTicker(int page, int pageSize) {
         String cacheName = getExchangeName() + "-" + ALL_24_HOUR_TICKER;
-        Supplier<LinkedHashMap[]> allCoinTicker = this::get24HrData;
-        LinkedHashMap[] data = cacheUtil.retrieveFromCache(cacheName, ALL_TICKERS, allCoinTicker);
+        Supplier<List<CoinDataFor24Hr>> allCoinTicker = this::get24HrData;
+        //the unfiltered rows are kept under their own name - the filtered list is kept by the snapshot refresher
+        List<CoinDataFor24Hr> data = cacheUtil.retrieveFromCache(cacheName, ALL_TICKER_ROWS, allCoinTicker);
         return get24HrCoinData(data, page, pageSize);
     }
 
-    public LinkedHashMap[] get24HrData() {
+    /**
+     * Call the exchange for the 24-hour data of all coins.
+     * The response is parsed as it is read directly into the 24-hour data objects.
+     *
+     * @return the 24-hour data for every coin on the exchange - the coins are not filtered.
+     */
+    public List<CoinDataFor24Hr> get24HrData() {
         String url = getUrlExtractor().getTickerUrl() + "/24hr";
-        ResponseEntity<LinkedHashMap[]> info = restTemplate.getForEntity(url, LinkedHashMap[].class);
-        LinkedHashMap[] body = info.getBody();
-        return body;
+        return callExchange(BinanceRateLimiter.ALL_TICKERS_24HR_WEIGHT, url,
+                response -> responseParser.parse24HrTickers(response.getBody()), new HashMap<>());
     }
 
-    public List<CoinDataFor24Hr> get24HrCoinData(LinkedHashMap[] data, int page, int pageSize) {
+    public List<CoinDataFor24Hr> get24HrCoinData(List<CoinDataFor24Hr> data, int page, int pageSize) {
+        //rows that are passed in (such as the cached rows) are shared with other callers, so they are copied before they are filled in
+        boolean shared = data != null;
         if (data == null) {
             data = get24HrData();
             if (data == null) {
@@ -505,29 +595,19 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
 
         //go through the data array, and return those in the page
         List<CoinDataFor24Hr> list = new ArrayList<>();
+        SymbolIndex symbolIndex = getSymbolIndex();
         int lastIndex = page * pageSize;
         if (page == -1) {
-            lastIndex = data.length;
-            pageSize = data.length;
+            lastIndex = data.size();
+            pageSize = data.size();
         }
-        for (int index = lastIndex - pageSize; index < (Math.min(lastIndex, data.length)); index++) {
-            get24HrCoinTicker(data[index]).ifPresent(list::add);
+        for (int index = lastIndex - pageSize; index < (Math.min(lastIndex, data.size())); index++) {
+            CoinDataFor24Hr row = shared ? data.get(index).copy() : data.get(index);
+            get24HrCoinTicker(row, symbolIndex).ifPresent(list::add);
         }
 
         coinMarketCapService.setMarketCapDataFor24HrData(getExchangeVisitor(), list);
-        //Some coins have icons by their id and not their name.
-        //Here, those will have a null icon.
-        //Attempt to find the icon with the id here.
-        list.stream()
-                .filter(coin -> coin.getIcon() == null || coin.getIcon().length == 0 && coin.getId() != null)
-                .forEach(coin -> coin.setIcon(cacheUtil.getIconBytes(null, coin.getId())));
-
-        //since this is the first time (in awhile) we have called the exchange info,
-        //start threads to update every minute for 15 minutes - this way the client gets
-        //updated 24-hour data every minute
-        //We stop at 15 minutes just to prevent too much data from being processed (we are trying to stay in the AWS free zone!),
-        // and we are trying to not go over quota on extracting exchange data.
-        startUpdates();
+        list.forEach(this::setIconUrl);
         return list;
     }
 
@@ -535,40 +615,6 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
         return get24HrCoinData(null, -1, -1);
     }
 
-    //Run the scheduled service call and put the results in the cache. Stop the scheduler after a maximum times of running.
-    private void runScheduled24HrAllCoinTicker() {
-        incrementAll24HourTickerCounter();
-        String cacheName = getExchangeName() + "-" + ALL_24_HOUR_TICKER;
-        //the number of times it is run * the delay interval is about 15 minutes
-        //so, after 15 minutes, the process will be shutdown
-        if (getAll24HourTickerCount() >= ALL_24_HOUR_MAX_COUNT) {
-            Log.debug("Shutting down scheduler executor for {} exchange", getExchangeName());
-            cacheUtil.evict(cacheName, ALL_TICKERS);
-            shutdownScheduledService();
-        } else {
-            CacheUtil.CacheCommand command = this::get24HrAllCoinTicker;
-            cacheUtil.evictAndThen(cacheName, ALL_TICKERS, command);
-        }
-    }
-
-    //Run a scheduler to update the 24-hour exchange coin ticker.
-    //The purpose of this is to extract data every 2.5 minutes, and save it in the cache.
-    //This goes for 15 minutes - we would do longer, but the API's severely limit how much data can be extracted.
-    private void startUpdates() {
-        ScheduledExecutorService scheduledService = getScheduledService();
-        if (scheduledService != null) {
-            //another scheduler is already executing - don't start another
-            return;
-        }
-        Log.debug("Starting scheduler executor for {} exchange", getExchangeName());
-        //todo: should the separate exchanges determine this? If so, it would encapsulate better.
-        scheduledService = Executors.newScheduledThreadPool(1);
-        Runnable command = this::runScheduled24HrAllCoinTicker;
-        //run every 2.5 minutes
-        scheduledService.scheduleAtFixedRate(command, ALL_24_HOUR_DELAY, ALL_24_HOUR_DELAY, TimeUnit.SECONDS);
-        setScheduledService(scheduledService);
-    }
-
     /**
      * Retrieve a list of coins with icons, which is contained in each element in the list.
      *
@@ -579,11 +625,10 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
     public List<CoinDataFor24Hr> getIcons() {
         List<CoinDataFor24Hr> coinList = get24HrAllCoinTicker();
         //go through each coin and get the icon, if it is there
-        coinList.forEach(coin -> {
-            byte[] icon = cacheUtil.getIconBytes(coin.getSymbol(), coin.getId());
-            coin.setIcon(icon);
-        });
-        return coinList;
+        //the icons are put on copies of the coins, so that the 24-hour data doesn't carry them
+        return coinList.stream()
+                .map(coin -> coin.copyWithIcon(cacheUtil.getIconBytes(coin.getSymbol(), coin.getId())))
+                .collect(Collectors.toList());
     }
 
     /**
@@ -605,15 +650,5 @@ public abstract class AbstractBinanceExchangeService implements ExchangeService
 
     public abstract String getExchangeName();
 
-    protected abstract int getAll24HourTickerCount();
-
-    protected abstract void incrementAll24HourTickerCounter();
-
-    protected abstract void shutdownScheduledService();
-
-    protected abstract ScheduledExecutorService getScheduledService();
-
-    protected abstract void setScheduledService(ScheduledExecutorService scheduledService);
-
     protected abstract String getUsdQuote();
 }
@@ -5,7 +5,6 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
-import java.util.Optional;
 
 @Component
 public class BinanceExchangeVisitor implements ExchangeVisitor {
@@ -35,12 +34,15 @@ public class BinanceExchangeVisitor implements ExchangeVisitor {
     @NotNull
     @Override
     public String getName(@NotNull String coin) {
-        return Optional.ofNullable(nameMap.get(coin)).orElseGet(() -> getSymbol(coin));
+        //these are called for each coin, so they don't allocate
+        String name = nameMap.get(coin);
+        return name != null ? name : getSymbol(coin);
     }
 
     @NotNull
     @Override
     public String getSymbol(@NotNull String coin) {
-        return Optional.ofNullable(symbolMap.get(coin)).orElse(coin);
+        String symbol = symbolMap.get(coin);
+        return symbol != null ? symbol : coin;
     }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.scanner.cryptoserver.exchange.binance.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket for the request weight of a Binance exchange.
+ * Binance limits the request weight used by an IP address each minute, and answers with a 429 (too many requests) when it is
+ * exceeded - and with a 418 (IP ban) if requests keep coming. So, the weight of each call is taken from the bucket before
+ * the call is made: if the bucket doesn't have enough weight, the call waits for it, or is rejected if the wait would be too long.
+ * The bucket is resynced from the used weight header that Binance returns with each response. The header doesn't count
+ * the calls that haven't had their response yet, so the weight of those calls is kept as in flight, and taken off as well.
+ */
+public class BinanceRateLimiter {
+    private static final Logger Log = LoggerFactory.getLogger(BinanceRateLimiter.class);
+    static final String USED_WEIGHT_HEADER = "X-MBX-USED-WEIGHT-1M";
+    static final String OLD_USED_WEIGHT_HEADER = "X-MBX-USED-WEIGHT";
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 60;
+
+    //the request weight of each endpoint - the klines weight depends on the number of candles (see KlineFetcher)
+    public static final int EXCHANGE_INFO_WEIGHT = 10;
+    public static final int TICKER_24HR_WEIGHT = 1;
+    public static final int ALL_TICKERS_24HR_WEIGHT = 40;
+
+    private final String exchangeName;
+    private final double capacity;
+    private final double weightPerNano;
+    private final long maxWaitNanos;
+    private final LongSupplier nanoClock;
+    //the weight available - this is negative when calls are waiting for weight
+    private double available;
+    //the weight of the calls that have been made (or are waiting for weight), but haven't had their response
+    private long inFlight;
+    private long lastRefill;
+    //set when the exchange has told us to back off, with a 429 or 418
+    private long blockedUntil;
+
+    /**
+     * @param exchangeName    the exchange, such as "binanceusa".
+     * @param weightPerMinute the request weight the exchange allows each minute.
+     * @param maxWaitMillis   the longest a call waits for weight before it is rejected.
+     */
+    public BinanceRateLimiter(String exchangeName, int weightPerMinute, long maxWaitMillis) {
+        this(exchangeName, weightPerMinute, maxWaitMillis, System::nanoTime);
+    }
+
+    BinanceRateLimiter(String exchangeName, int weightPerMinute, long maxWaitMillis, LongSupplier nanoClock) {
+        this.exchangeName = exchangeName;
+        this.capacity = weightPerMinute;
+        this.weightPerNano = weightPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.nanoClock = nanoClock;
+        this.available = weightPerMinute;
+        this.lastRefill = nanoClock.getAsLong();
+        this.blockedUntil = lastRefill;
+    }
+
+    /**
+     * The weight taken from the bucket for a call. The weight is in flight until the call has its response:
+     * the response resyncs the bucket with update(), and a call that fails without a response is closed.
+     */
+    public class Reservation implements AutoCloseable {
+        private final int weight;
+        private boolean finished;
+
+        private Reservation(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * The call has its response - resync the bucket from the used weight, which now counts this call.
+         *
+         * @param headers the headers of the response.
+         */
+        public void update(HttpHeaders headers) {
+            finish();
+            BinanceRateLimiter.this.update(headers);
+        }
+
+        /**
+         * The call has an error response - back off if the exchange has rejected the call.
+         *
+         * @param status  the status code of the response, such as 429.
+         * @param headers the headers of the response.
+         */
+        public void update(HttpStatus status, HttpHeaders headers) {
+            finish();
+            BinanceRateLimiter.this.update(status, headers);
+        }
+
+        /**
+         * Finish the call, if it hasn't had its response.
+         */
+        @Override
+        public void close() {
+            finish();
+        }
+
+        private void finish() {
+            synchronized (BinanceRateLimiter.this) {
+                if (!finished) {
+                    finished = true;
+                    inFlight -= weight;
+                }
+            }
+        }
+    }
+
+    /**
+     * Take weight from the bucket for a call, waiting for the weight if necessary.
+     *
+     * @param weight the request weight of the call.
+     * @return the reservation, which is closed when the call is done.
+     * @throws RateLimitException if the call would have to wait too long.
+     */
+    public Reservation acquire(int weight) {
+        long waitNanos = reserve(weight);
+        Reservation reservation = new Reservation(weight);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                reservation.close();
+                Thread.currentThread().interrupt();
+                throw new RateLimitException("Interrupted while waiting for request weight on " + exchangeName);
+            }
+        }
+        return reservation;
+    }
+
+    /**
+     * Reserve weight for a call.
+     *
+     * @param weight the request weight of the call.
+     * @return how long the call needs to wait for the weight, in nanoseconds.
+     * @throws RateLimitException if the call would have to wait too long.
+     */
+    synchronized long reserve(int weight) {
+        long now = refill();
+        long waitNanos = Math.max(blockedUntil - now, 0);
+        double remaining = available - weight;
+        if (remaining < 0) {
+            waitNanos = Math.max(waitNanos, (long) Math.ceil(-remaining / weightPerNano));
+        }
+        if (waitNanos > maxWaitNanos) {
+            String message = String.format("Request weight limit reached for %s: a call with weight %d would wait %d ms",
+                    exchangeName, weight, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            throw new RateLimitException(message);
+        }
+        available = remaining;
+        inFlight += weight;
+        return waitNanos;
+    }
+
+    /**
+     * Resync the bucket with the weight the exchange says has been used.
+     *
+     * @param headers the headers of a response from the exchange.
+     */
+    public void update(HttpHeaders headers) {
+        if (headers == null) {
+            return;
+        }
+        String used = headers.getFirst(USED_WEIGHT_HEADER);
+        if (used == null) {
+            used = headers.getFirst(OLD_USED_WEIGHT_HEADER);
+        }
+        if (used == null) {
+            return;
+        }
+        try {
+            updateUsedWeight(Integer.parseInt(used.trim()));
+        } catch (NumberFormatException e) {
+            Log.debug("Unable to read the used weight header for {}: {}", exchangeName, used);
+        }
+    }
+
+    synchronized void updateUsedWeight(int usedWeight) {
+        refill();
+        //the exchange knows best - this also picks up the weight used by other calls from this IP - but it doesn't know about
+        //the calls that are in flight, including the calls that are waiting for weight
+        available = capacity - usedWeight - inFlight;
+    }
+
+    /**
+     * Back off after the exchange has rejected a call, for as long as the exchange asks.
+     *
+     * @param status  the status code of the response, such as 429.
+     * @param headers the headers of the response.
+     */
+    public void update(HttpStatus status, HttpHeaders headers) {
+        if (status != HttpStatus.TOO_MANY_REQUESTS && status != HttpStatus.I_AM_A_TEAPOT) {
+            update(headers);
+            return;
+        }
+        long retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+        String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                retryAfterSeconds = Long.parseLong(retryAfter.trim());
+            } catch (NumberFormatException e) {
+                Log.debug("Unable to read the retry after header for {}: {}", exchangeName, retryAfter);
+            }
+        }
+        Log.error("Exchange {} responded with {}: no calls will be made for {} seconds", exchangeName, status, retryAfterSeconds);
+        block(TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+    }
+
+    synchronized void block(long nanos) {
+        long now = refill();
+        blockedUntil = Math.max(blockedUntil, now + nanos);
+        available = Math.min(available, 0);
+    }
+
+    synchronized double getAvailable() {
+        refill();
+        return available;
+    }
+
+    synchronized long getInFlight() {
+        return inFlight;
+    }
+
+    //Add the weight that has been freed since the last refill. Returns the current time.
+    private long refill() {
+        long now = nanoClock.getAsLong();
+        available = Math.min(capacity, available + (now - lastRefill) * weightPerNano);
+        lastRefill = now;
+        return now;
+    }
+}
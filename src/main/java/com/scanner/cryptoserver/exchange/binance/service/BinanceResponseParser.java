@@ -0,0 +1,183 @@
+package com.scanner.cryptoserver.exchange.binance.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries;
+import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token-streaming parser for Binance api responses.
+ * The response body is read directly into the DTOs (or candle series), so that no intermediate
+ * graph of maps, lists and boxed values is created for each row.
+ * The all-ticker (24hr) call returns well over a thousand rows, so this matters.
+ */
+public class BinanceResponseParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Parse the klines (candlestick) response. Each kline is an array of the form:
+     * [openTime, "open", "high", "low", "close", "volume", closeTime, "quoteAssetVolume", numberOfTrades, ...]
+     *
+     * @param stream the response body.
+     * @param symbol the symbol the klines were requested for, such as "BTCUSDT".
+     * @return the candles, in the order they are in the response.
+     * @throws IOException if the response cannot be read or is not a klines array.
+     */
+    public CandleSeries parseKlines(InputStream stream, String symbol) throws IOException {
+        CandleSeries series = new CandleSeries(symbol);
+        try (JsonParser parser = JSON_FACTORY.createParser(stream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array of klines for " + symbol);
+            }
+            while (parser.nextToken() == JsonToken.START_ARRAY) {
+                parseKline(parser, series);
+            }
+        }
+        return series.trimToSize();
+    }
+
+    private void parseKline(JsonParser parser, CandleSeries series) throws IOException {
+        long openTime = 0;
+        double open = 0;
+        double high = 0;
+        double low = 0;
+        double close = 0;
+        double volume = 0;
+        long closeTime = 0;
+        double quoteAssetVolume = 0;
+        int numberOfTrades = 0;
+        int position = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonParseException(parser, "Unexpected end of klines for " + series.getSymbol());
+            }
+            switch (position) {
+                case 0:
+                    openTime = parser.getValueAsLong();
+                    break;
+                case 1:
+                    open = parser.getValueAsDouble();
+                    break;
+                case 2:
+                    high = parser.getValueAsDouble();
+                    break;
+                case 3:
+                    low = parser.getValueAsDouble();
+                    break;
+                case 4:
+                    close = parser.getValueAsDouble();
+                    break;
+                case 5:
+                    volume = parser.getValueAsDouble();
+                    break;
+                case 6:
+                    closeTime = parser.getValueAsLong();
+                    break;
+                case 7:
+                    quoteAssetVolume = parser.getValueAsDouble();
+                    break;
+                case 8:
+                    numberOfTrades = parser.getValueAsInt();
+                    break;
+                default:
+                    //the taker buy volumes, etc. are not used
+                    parser.skipChildren();
+            }
+            position++;
+        }
+        series.add(openTime, open, high, low, close, volume, closeTime, quoteAssetVolume, numberOfTrades);
+    }
+
+    /**
+     * Parse the 24-hour ticker response for all coins. The rows are not filtered here - all the coins
+     * in the response are returned, including those that are not trading.
+     *
+     * @param stream the response body.
+     * @return the 24-hour data for each coin in the response.
+     * @throws IOException if the response cannot be read or is not an array of tickers.
+     */
+    public List<CoinDataFor24Hr> parse24HrTickers(InputStream stream) throws IOException {
+        List<CoinDataFor24Hr> list = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(stream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array of 24-hour tickers");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                list.add(parse24HrTickerObject(parser));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Parse the 24-hour ticker response for a single coin.
+     *
+     * @param stream the response body.
+     * @return the 24-hour data for the coin, or null if the response is empty.
+     * @throws IOException if the response cannot be read or is not a ticker object.
+     */
+    public CoinDataFor24Hr parse24HrTicker(InputStream stream) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(stream)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a 24-hour ticker object");
+            }
+            return parse24HrTickerObject(parser);
+        }
+    }
+
+    private CoinDataFor24Hr parse24HrTickerObject(JsonParser parser) throws IOException {
+        CoinDataFor24Hr data = new CoinDataFor24Hr();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "symbol":
+                    data.setSymbol(parser.getValueAsString());
+                    break;
+                case "priceChange":
+                    data.setPriceChange(parser.getValueAsDouble());
+                    break;
+                case "priceChangePercent":
+                    data.setPriceChangePercent(parser.getValueAsDouble());
+                    break;
+                case "lastPrice":
+                    data.setLastPrice(parser.getValueAsDouble());
+                    break;
+                case "highPrice":
+                    data.setHighPrice(parser.getValueAsDouble());
+                    break;
+                case "lowPrice":
+                    data.setLowPrice(parser.getValueAsDouble());
+                    break;
+                case "volume":
+                    data.setVolume(parser.getValueAsDouble());
+                    break;
+                case "quoteVolume":
+                    data.setQuoteVolume(parser.getValueAsDouble());
+                    break;
+                case "openTime":
+                    data.setOpenTime(parser.getValueAsLong());
+                    break;
+                case "closeTime":
+                    data.setCloseTime(parser.getValueAsLong());
+                    break;
+                default:
+                    //fields such as the bid and ask prices are not used
+                    parser.skipChildren();
+            }
+        }
+        return data;
+    }
+}
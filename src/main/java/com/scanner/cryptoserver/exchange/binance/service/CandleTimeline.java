@@ -0,0 +1,83 @@
+package com.scanner.cryptoserver.exchange.binance.service;
+
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries;
+
+import java.util.function.Supplier;
+
+/**
+ * The closed candles of a coin for one interval (i.e. BTCUSDT for 4-hour candles) on an exchange.
+ * A closed candle never changes, so once the timeline has the candles of a window, only the open candle
+ * and anything newer need to be retrieved from the exchange when the window is refreshed.
+ */
+public class CandleTimeline {
+
+    @FunctionalInterface
+    public interface CandleFetcher {
+        /**
+         * Retrieve the candles for a time range from the exchange.
+         *
+         * @param startTime the start of the range, in epoch milliseconds.
+         * @param endTime   the end of the range, in epoch milliseconds.
+         * @return the candles, in close time order.
+         */
+        CandleSeries fetch(long startTime, long endTime);
+    }
+
+    private final String symbol;
+    //the closed candles, in close time order
+    private CandleSeries closed;
+    //the longest window that has been asked for - older candles are dropped
+    private long horizon;
+    //the timeline has every closed candle that opened at or after this time - the first candle can open later than this,
+    //such as when the window starts part way through a candle, or before the coin was listed
+    private long coveredFrom;
+
+    public CandleTimeline(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Get the candles for a window that ends now.
+     * If the timeline does not go back to the start of the window, the whole window is retrieved.
+     * Otherwise, only the candles after the last closed candle are retrieved.
+     *
+     * @param startTime  the start of the window, in epoch milliseconds.
+     * @param now        the current time, in epoch milliseconds.
+     * @param fullWindow retrieves all the candles of the window from the exchange.
+     * @param fetcher    retrieves the candles for a time range from the exchange.
+     * @return a new series with the candles in the window, including the open candle.
+     */
+    public synchronized CandleSeries getWindow(long startTime, long now, Supplier<CandleSeries> fullWindow, CandleFetcher fetcher) {
+        horizon = Math.max(horizon, now - startTime);
+        if (closed == null || closed.isEmpty() || startTime < coveredFrom) {
+            CandleSeries window = fullWindow.get();
+            closed = window.subSeries(0, window.indexOfCloseTime(now));
+            coveredFrom = startTime;
+            return window;
+        }
+        //usually, this is just the open candle
+        CandleSeries recent = fetcher.fetch(closed.getCloseTime(closed.size() - 1) + 1, now);
+        int firstOpen = recent.indexOfCloseTime(now);
+        closed.addAll(recent, 0, firstOpen);
+        trim(now);
+
+        int first = closed.indexOfOpenTime(startTime);
+        CandleSeries window = new CandleSeries(symbol, closed.size() - first + recent.size() - firstOpen);
+        window.addAll(closed, first, closed.size());
+        window.addAll(recent, firstOpen, recent.size());
+        return window;
+    }
+
+    //Drop the candles that are older than any window that has been asked for.
+    private void trim(long now) {
+        int first = closed.indexOfCloseTime(now - horizon);
+        if (first > 0) {
+            closed = closed.subSeries(first, closed.size());
+            coveredFrom = Math.max(coveredFrom, now - horizon);
+        }
+    }
+
+    synchronized int size() {
+        return closed == null ? 0 : closed.size();
+    }
+}
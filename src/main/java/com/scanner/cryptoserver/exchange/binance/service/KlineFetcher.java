@@ -0,0 +1,156 @@
+package com.scanner.cryptoserver.exchange.binance.service;
+
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retrieves the klines (candles) for a time range of any length.
+ * The klines api returns a limited number of candles for a call, so the range is split into pages,
+ * which are retrieved concurrently - but no more than the parallelism at a time,
+ * and only if the request weight of all the pages is within the weight budget.
+ * The pages are retrieved on the executor passed in, since a call blocks (on the exchange, and on the rate limiter) -
+ * so a slow exchange doesn't hold up the threads of the common pool.
+ */
+public class KlineFetcher {
+
+    @FunctionalInterface
+    public interface PageFetcher {
+        /**
+         * Retrieve a page of candles from the exchange.
+         *
+         * @param symbol    The coin, such as "LTCUSDT".
+         * @param interval  The interval string such as "12h" (12 hours).
+         * @param startTime The start of the page, in epoch milliseconds.
+         * @param endTime   The end of the page, in epoch milliseconds.
+         * @param limit     The most candles in the page.
+         * @return the candles, in close time order.
+         */
+        CandleSeries fetch(String symbol, String interval, long startTime, long endTime, int limit);
+    }
+
+    private final PageFetcher pageFetcher;
+    private final Executor executor;
+    private final int pageLimit;
+    private final int parallelism;
+    private final int weightBudget;
+
+    /**
+     * @param pageFetcher  retrieves a page of candles from the exchange.
+     * @param executor     runs the page retrievals.
+     * @param pageLimit    the number of candles in a page, such as 500 or 1000.
+     * @param parallelism  the most pages that are retrieved at the same time.
+     * @param weightBudget the most request weight that retrieving a time range can use.
+     */
+    public KlineFetcher(PageFetcher pageFetcher, Executor executor, int pageLimit, int parallelism, int weightBudget) {
+        this.pageFetcher = pageFetcher;
+        this.executor = executor;
+        this.pageLimit = pageLimit;
+        this.parallelism = parallelism;
+        this.weightBudget = weightBudget;
+    }
+
+    /**
+     * Retrieve the candles for a time range.
+     *
+     * @param symbol    The coin, such as "LTCUSDT".
+     * @param interval  The interval string such as "12h" (12 hours).
+     * @param startTime The start of the range, in epoch milliseconds.
+     * @param endTime   The end of the range, in epoch milliseconds.
+     * @return the candles, in close time order.
+     */
+    public CandleSeries fetch(String symbol, String interval, long startTime, long endTime) {
+        long pageMillis = getIntervalMillis(interval) * pageLimit;
+        int pages = Math.toIntExact((endTime - startTime) / pageMillis + 1);
+        if (pages * getPageWeight(pageLimit) > weightBudget) {
+            String message = String.format("Too much data requested for %s with interval %s: %d pages of %d candles", symbol, interval, pages, pageLimit);
+            throw new RuntimeException(message);
+        }
+        if (pages == 1) {
+            return pageFetcher.fetch(symbol, interval, startTime, endTime, pageLimit);
+        }
+
+        CandleSeries[] results = new CandleSeries[pages];
+        AtomicInteger nextPage = new AtomicInteger();
+        //each worker retrieves the next page that hasn't been taken, until there are no more pages
+        Runnable worker = () -> {
+            int page;
+            while ((page = nextPage.getAndIncrement()) < pages) {
+                long from = startTime + page * pageMillis;
+                long to = Math.min(endTime, from + pageMillis - 1);
+                results[page] = pageFetcher.fetch(symbol, interval, from, to, pageLimit);
+            }
+        };
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(parallelism, pages)];
+        for (int index = 0; index < workers.length; index++) {
+            workers[index] = CompletableFuture.runAsync(worker, executor);
+        }
+        try {
+            CompletableFuture.allOf(workers).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+
+        //merge on the close time - the merge also drops a candle that is on the boundary of two pages
+        CandleSeries candles = new CandleSeries(symbol, 1);
+        for (CandleSeries result : results) {
+            if (result != null) {
+                candles = CandleSeries.merge(candles, result);
+            }
+        }
+        return candles.trimToSize();
+    }
+
+    /**
+     * Get the length of an interval, such as "4h" (four hours) or "1d" (one day).
+     *
+     * @param interval the interval string.
+     * @return the length of the interval, in milliseconds.
+     */
+    static long getIntervalMillis(String interval) {
+        int amount = Integer.parseInt(interval.substring(0, interval.length() - 1));
+        char unit = interval.charAt(interval.length() - 1);
+        switch (unit) {
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(amount);
+            case 'h':
+            case 'H':
+                return TimeUnit.HOURS.toMillis(amount);
+            case 'd':
+                return TimeUnit.DAYS.toMillis(amount);
+            case 'w':
+                return TimeUnit.DAYS.toMillis(7L * amount);
+            case 'M':
+                //a month is at least 28 days - under-estimating the length means a page never has more candles than the limit
+                return TimeUnit.DAYS.toMillis(28L * amount);
+            default:
+                throw new IllegalArgumentException("Unknown interval: " + interval);
+        }
+    }
+
+    /**
+     * Get the request weight of a klines call, which depends on the number of candles asked for.
+     *
+     * @param limit the number of candles.
+     * @return the request weight.
+     */
+    static int getPageWeight(int limit) {
+        if (limit <= 100) {
+            return 1;
+        }
+        if (limit <= 500) {
+            return 2;
+        }
+        if (limit <= 1000) {
+            return 5;
+        }
+        return 10;
+    }
+}
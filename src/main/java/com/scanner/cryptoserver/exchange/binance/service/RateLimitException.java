@@ -0,0 +1,11 @@
+package com.scanner.cryptoserver.exchange.binance.service;
+
+/**
+ * Thrown when a call to an exchange is not made, because it would go over the request weight limit of the exchange.
+ */
+public class RateLimitException extends RuntimeException {
+
+    public RateLimitException(String message) {
+        super(message);
+    }
+}
@@ -1,28 +1,55 @@
 package com.scanner.cryptoserver.exchange.bittrex.controller
 
-import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.scanner.cryptoserver.exchange.service.ExchangeService
+import com.scanner.cryptoserver.util.SerializedResponse
+import org.springframework.http.HttpHeaders
 import org.springframework.http.MediaType
+import org.springframework.http.ResponseEntity
 import org.springframework.web.bind.annotation.CrossOrigin
 import org.springframework.web.bind.annotation.GetMapping
+import org.springframework.web.bind.annotation.RequestHeader
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RestController
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import java.util.concurrent.atomic.AtomicReference
 
 @RestController
 //@CrossOrigin(origins = ["https://develop.d2vswqrfiywrsc.amplifyapp.com"])
 @CrossOrigin(origins = ["http://localhost:3000"])
 @RequestMapping("api/v1/bittrex")
-class BittrexExchangeController(private val bittrexService: ExchangeService) {
+class BittrexExchangeController(private val bittrexService: ExchangeService, private val objectMapper: ObjectMapper) {
+    private val all24HourTickerResponse = AtomicReference<SerializedResponse>()
 
     /**
      * Gets all the coins and 24-hour data on the exchange.
      * NOTE: This call has the heaviest "weight" of all exchange calls: Use sparingly!
      *
+     * @param acceptEncoding the encodings the client accepts - the data is sent gzipped if the client accepts gzip.
+     * @param ifNoneMatch    the ETag of the data the client already has - if the data hasn't changed, nothing is sent.
      * @return a list of all coins on the exchange over the past 24 hours.
      */
     @GetMapping(value = ["/24HourTicker"], produces = [MediaType.APPLICATION_JSON_VALUE])
-    fun getAll24HourTicker(): List<CoinDataFor24Hr> {
+    fun getAll24HourTicker(
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) acceptEncoding: String?,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) ifNoneMatch: String?
+    ): ResponseEntity<ByteArray> {
         val tickers = bittrexService.get24HrAllCoinTicker()
-        return tickers
+        //the data only changes when it is refreshed, so it is serialized once for all the requests,
+        //and the client can cache it until the next refresh
+        return SerializedResponse.get(objectMapper, all24HourTickerResponse, tickers)
+            .toResponseEntity(acceptEncoding, ifNoneMatch, bittrexService.get24HrAllCoinTickerMaxAge())
+    }
+
+    /**
+     * Streams the 24-hour data for all the coins on the exchange as Server-Sent Events.
+     * The client first gets a "snapshot" event with all the coins, and then a "delta" event
+     * with the coins that changed each time the data is refreshed.
+     *
+     * @return the event stream.
+     */
+    @GetMapping(value = ["/24HourTicker/stream"], produces = [MediaType.TEXT_EVENT_STREAM_VALUE])
+    fun streamAll24HourTicker(): SseEmitter {
+        return bittrexService.get24HrAllCoinTickerStream().subscribe()
     }
 }
\ No newline at end of file
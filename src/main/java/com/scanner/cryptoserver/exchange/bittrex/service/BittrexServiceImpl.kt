@@ -1,5 +1,6 @@
 package com.scanner.cryptoserver.exchange.bittrex.service
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
@@ -7,22 +8,28 @@ import com.scanner.cryptoserver.exchange.binance.dto.CoinTicker
 import com.scanner.cryptoserver.exchange.bittrex.dto.Bittrex24HrData
 import com.scanner.cryptoserver.exchange.bittrex.dto.BittrexTicker
 import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapService
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo
 import com.scanner.cryptoserver.exchange.service.ExchangeService
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor
+import com.scanner.cryptoserver.exchange.service.TickerStream
 import com.scanner.cryptoserver.util.CacheUtil
+import com.scanner.cryptoserver.util.SnapshotRefresher
 import com.scanner.cryptoserver.util.UrlReader
 import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.stereotype.Service
+import java.time.Duration
 import java.util.*
 import java.util.function.Supplier
+import javax.annotation.PreDestroy
 
 @Service(value = "bittrexService")
 class BittrexServiceImpl(
     private val cacheUtil: CacheUtil,
     private val coinMarketCapService: CoinMarketCapService,
-    private val urlReader: UrlReader
+    private val urlReader: UrlReader,
+    objectMapper: ObjectMapper
 ) : ExchangeService {
     private val Log = LoggerFactory.getLogger(BittrexServiceImpl::class.java)
     private val nonUsaMarkets = listOf("EUR")
@@ -42,33 +49,75 @@ class BittrexServiceImpl(
     @Value("\${exchanges.bittrex.tickers}")
     private val tickersUrl: String? = null
 
+    //the 24-hour data is refreshed every minute, while there have been clients asking for it in the last 15 minutes
+    private val allCoinTickerRefresher = SnapshotRefresher(
+        "$EXCHANGE_NAME-$ALL_24_HR_TICKER", { loadAllCoinTicker() }, Duration.ofMinutes(1), Duration.ofMinutes(15)
+    )
+    //one visitor for the life of the service - the coin market cap listing keeps its join to the exchange coins by visitor
+    private val visitor = object : ExchangeVisitor {
+        override fun getName(coin: String): String {
+            if (coin == "UNI") {
+                return "Uniswap"
+            }
+            return coin
+        }
+
+        override fun getSymbol(coin: String): String {
+            return coin
+        }
+    }
+    private val allCoinTickerStream = TickerStream("$EXCHANGE_NAME-$ALL_24_HR_TICKER", allCoinTickerRefresher, objectMapper)
+
     init {
         cacheUtil.addExchangeInfoSupplier(EXCHANGE_NAME, exchangeInfoSupplier)
     }
 
+    @PreDestroy
+    fun shutdown() {
+        allCoinTickerStream.shutdown()
+        allCoinTickerRefresher.shutdown()
+    }
+
     override fun get24HrAllCoinTicker(): List<CoinDataFor24Hr> {
+        return allCoinTickerRefresher.get()
+    }
+
+    private fun loadAllCoinTicker(): List<CoinDataFor24Hr> {
+        //the markets and tickers are cached for the other calls - make sure this refresh gets new data
+        val cacheName = "$EXCHANGE_NAME-$ALL_24_HR_TICKER"
+        cacheUtil.evict(cacheName, ALL_MARKET_TICKERS)
+        cacheUtil.evict(cacheName, ALL_TICKERS)
         var coins = getCoinDataFor24Hour()
         //we need to make another api call to get the "current price", which is "lastTradeRate" in the json
-        val tickers = getTickersFromCache()
+        //index the tickers by symbol, so that each coin lookup is constant time
+        val tickers = getTickersFromCache().associateBy { it.symbol }
         coinMarketCapService.setMarketCapDataFor24HrData(exchangeVisitor, coins)
         //exclude coins that don't have a market cap - they are probably old coins that the exchange doesn't support anymore
         coins = coins.filter { it.marketCap > 0.0 }
         coins.forEach {
-            it.icon = cacheUtil.getIconBytes(it.coin, it.id)
+            //the icon is sent separately (and cached by the client), so that it isn't in every response
+            //one lookup finds the icon by the coin name, or by the coin market cap id if there is no icon by name
+            it.iconUrl = cacheUtil.getIconUrl(it.coin, it.id)
             it.tradeLink = tradeUrl + it.currency + "-" + it.coin
-            val bittrexTicker = tickers.find { ticker -> ticker.symbol == it.symbol }
+            val bittrexTicker = tickers[it.symbol]
             val lastTradeRate = bittrexTicker?.lastTradeRate
             it.lastPrice = lastTradeRate
         }
-        //Some coins have icons by their id and not their name.
-        //Here, those will have a null icon.
-        //Attempt to find the icon with the id here.
-        coins.stream()
-            .filter { coin: CoinDataFor24Hr -> coin.icon == null || coin.icon.isEmpty() && coin.id != null }
-            .forEach { coin: CoinDataFor24Hr -> coin.icon = cacheUtil.getIconBytes(null, coin.id) }
         return coins
     }
 
+    override fun get24HrAllCoinTickerStream(): TickerStream {
+        return allCoinTickerStream
+    }
+
+    override fun get24HrAllCoinTickerMaxAge(): Duration {
+        return allCoinTickerRefresher.timeToNextRefresh
+    }
+
+    fun get24HrAllCoinTickerRefresher(): SnapshotRefresher<List<CoinDataFor24Hr>> {
+        return allCoinTickerRefresher
+    }
+
     override fun get24HrAllCoinTicker(page: Int, pageSize: Int): MutableList<CoinDataFor24Hr> {
         TODO("Not yet implemented")
     }
@@ -111,11 +160,8 @@ class BittrexServiceImpl(
     override fun getIcons(): List<CoinDataFor24Hr> {
         val coinList = get24HrAllCoinTicker()
         //go through each coin and get the icon, if it is there
-        coinList.forEach {
-            val icon = cacheUtil.getIconBytes(it.symbol, it.id)
-            it.icon = icon
-        }
-        return coinList
+        //the icons are put on copies of the coins, so that the 24-hour data doesn't carry them
+        return coinList.map { it.copyWithIcon(cacheUtil.getIconBytes(it.symbol, it.id)) }
     }
 
     override fun getMissingIcons(): List<CoinDataFor24Hr> {
@@ -135,35 +181,41 @@ class BittrexServiceImpl(
         val markets = cacheUtil.retrieveFromCache(cacheName, ALL_MARKETS) { getMarkets() }
         //now adapt the Bittrex markets objects to Symbols
         val symbolList = markets.map { it.coinAdapter() }
-        val exchangeInfo = ExchangeInfo()
-        //put the symbols in an exchange info object, to be consistent with all the exchange info from other exchanges
-        exchangeInfo.coins = symbolList
-        //remove currency markets that are not USA-based, such as the Euro ("EUR")
-        exchangeInfo.coins.removeIf { nonUsaMarkets.contains(it.quoteAsset) }
+        //put the symbols in an exchange info snapshot, to be consistent with all the exchange info from other exchanges
+        //this removes the currency markets that are not USA-based, such as the Euro ("EUR"), and builds the lookup index
+        var exchangeInfo = ExchangeInfo.snapshotOf(symbolList, nonUsaMarkets)
+        //only the cached listing is used here - getting a new listing needs the exchange info
+        val listing = coinMarketCapService.cachedCoinMarketCapListing
+        if (listing != null) {
+            exchangeInfo = exchangeInfo.withMarketCaps(exchangeVisitor, listing, nonUsaMarkets)
+        }
         //put the Bittrex exchange info in the cache
         val name = "$EXCHANGE_NAME-$EXCHANGE_INFO"
         cacheUtil.putInCache(EXCHANGE_INFO, name, exchangeInfo)
         return exchangeInfo
     }
 
-    override fun getExchangeVisitor(): ExchangeVisitor {
-        return object : ExchangeVisitor {
-            override fun getName(coin: String): String {
-                if (coin == "UNI") {
-                    return "Uniswap"
-                }
-                return coin
-            }
+    /**
+     * Set the market cap and id of the coins in the exchange info. The exchange info in the cache is replaced
+     * with a new snapshot that has the market caps - the snapshot that other threads may be reading is not changed.
+     *
+     * @param listing the coin market cap listing.
+     * @return the new exchange info snapshot.
+     */
+    fun setMarketCaps(listing: CoinMarketCapListing): ExchangeInfo {
+        val exchangeInfo = retrieveExchangeInfoFromCache().withMarketCaps(exchangeVisitor, listing, nonUsaMarkets)
+        cacheUtil.putInCache(EXCHANGE_INFO, "$EXCHANGE_NAME-$EXCHANGE_INFO", exchangeInfo)
+        return exchangeInfo
+    }
 
-            override fun getSymbol(coin: String): String {
-                return coin
-            }
-        }
+    override fun getExchangeVisitor(): ExchangeVisitor {
+        return visitor
     }
 
     override fun retrieveExchangeInfoFromCache(): ExchangeInfo {
         val name = "$EXCHANGE_NAME-$EXCHANGE_INFO"
-        val exchangeInfo = cacheUtil.retrieveFromCache<ExchangeInfo>(EXCHANGE_INFO, name, null)
+        //load the exchange info if it isn't in the cache, so that setMarketCaps() always has a snapshot to copy
+        val exchangeInfo = cacheUtil.retrieveFromCache(EXCHANGE_INFO, name, exchangeInfoSupplier)
         return exchangeInfo
     }
 
@@ -8,7 +8,6 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +40,12 @@ public class CoinMarketCapApiServiceImpl implements CoinMarketCapApiService {
     @Value("${exchanges.coinmarketcap.quotes}")
     private String exchangeQuotesUrl;
     private final RestOperations restTemplate;
+    //the shared, pooled http client - so that each call reuses an open connection
+    private final CloseableHttpClient httpClient;
 
-    public CoinMarketCapApiServiceImpl(RestOperations restTemplate) {
+    public CoinMarketCapApiServiceImpl(RestOperations restTemplate, CloseableHttpClient httpClient) {
         this.restTemplate = restTemplate;
+        this.httpClient = httpClient;
     }
 
     /**
@@ -114,13 +116,12 @@ public class CoinMarketCapApiServiceImpl implements CoinMarketCapApiService {
         URIBuilder query = new URIBuilder(uri);
         query.addParameters(parameters);
 
-        CloseableHttpClient client = HttpClients.createDefault();
         HttpGet request = new HttpGet(query.build());
         request.setHeader(HttpHeaders.ACCEPT, "application/json");
         request.addHeader("X-CMC_PRO_API_KEY", getKey());
 
         Log.info("Calling coin market cap api: {}", uri);
-        try (CloseableHttpResponse response = client.execute(request)) {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
             HttpEntity entity = response.getEntity();
             responseContent = EntityUtils.toString(entity);
             EntityUtils.consume(entity);
@@ -0,0 +1,232 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap;
+
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing;
+import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the coin market cap data on a schedule: the map (the id, symbol and name of every coin) once a day,
+ * the info once a week, and the quotes every quote interval. The readers only ever get the latest listing,
+ * so a request never waits for the coin market cap api.
+ * The coin market cap plan allows a number of credits per day (the day starts at midnight UTC). The credits used by
+ * each call are counted, and a call is skipped if the credits left for the day won't cover it. When the credits
+ * are running low, the quotes are refreshed less often, so that the credits left last until the end of the day.
+ */
+@Service
+public class CoinMarketCapRefresher {
+    private static final Logger Log = LoggerFactory.getLogger(CoinMarketCapRefresher.class);
+    private static final Duration MAP_INTERVAL = Duration.ofDays(1);
+    private static final Duration INFO_INTERVAL = Duration.ofDays(7);
+    private final CoinMarketCapService coinMarketCapService;
+    private final ExchangeVisitor visitor;
+    private final long dailyCredits;
+    private final Duration quoteInterval;
+    private final Clock clock;
+    private LocalDate day;
+    private long creditsToday;
+    //the credits the latest refresh of the quotes used - the next refresh is expected to use about the same
+    private long lastQuoteCost = 1;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public CoinMarketCapRefresher(CoinMarketCapService coinMarketCapService, ExchangeVisitor visitor,
+                                  @Value("${exchanges.coinmarketcap.daily-credits:300}") long dailyCredits,
+                                  @Value("${exchanges.coinmarketcap.quote-interval:1h}") Duration quoteInterval) {
+        this(coinMarketCapService, visitor, dailyCredits, quoteInterval, Clock.systemUTC());
+    }
+
+    CoinMarketCapRefresher(CoinMarketCapService coinMarketCapService, ExchangeVisitor visitor, long dailyCredits, Duration quoteInterval, Clock clock) {
+        this.coinMarketCapService = coinMarketCapService;
+        this.visitor = visitor;
+        this.dailyCredits = dailyCredits;
+        this.quoteInterval = quoteInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the quotes (and the map, unless the map loaded from the cache snapshot is recent), then keep them
+     * and the info refreshed on a schedule. The map and the info in the cache snapshot are only refreshed when they are due,
+     * so that a restart doesn't use credits on them.
+     * This is called once the exchange info has been retrieved, since the quotes are only retrieved
+     * for the coins on the exchanges.
+     *
+     * @return the quotes listing, or null if it couldn't be retrieved.
+     */
+    public CoinMarketCapListing start() {
+        Duration mapDelay = getInitialDelay(coinMarketCapService.getCoinMarketCapMapLoadedAt(), MAP_INTERVAL);
+        if (mapDelay.isZero()) {
+            refreshMap();
+            mapDelay = MAP_INTERVAL;
+        }
+        Duration infoDelay = getInitialDelay(coinMarketCapService.getCoinMarketCapInfoLoadedAt(), INFO_INTERVAL);
+        CoinMarketCapListing listing = refreshQuotes();
+        synchronized (this) {
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "coin-market-cap-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                scheduler.scheduleWithFixedDelay(this::refreshMap, mapDelay.toMillis(), MAP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                scheduler.scheduleWithFixedDelay(this::refreshInfo, infoDelay.toMillis(), INFO_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                scheduleQuotes();
+            }
+        }
+        return listing;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Get the time until a value is due to be refreshed.
+     *
+     * @param loadedAt when the value was retrieved, in epoch milliseconds, or 0 if it hasn't been retrieved.
+     * @param interval how often the value is refreshed.
+     * @return the time until the value is due - zero if it is due now.
+     */
+    Duration getInitialDelay(long loadedAt, Duration interval) {
+        Duration age = Duration.ofMillis(Math.max(0, clock.millis() - loadedAt));
+        return age.compareTo(interval) >= 0 ? Duration.ZERO : interval.minus(age);
+    }
+
+    private synchronized void scheduleQuotes() {
+        if (scheduler != null) {
+            scheduler.schedule(() -> {
+                try {
+                    refreshQuotes();
+                } finally {
+                    scheduleQuotes();
+                }
+            }, getNextQuoteDelay().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void refreshMap() {
+        try {
+            CoinMarketCapListing latest = coinMarketCapService.getCachedCoinMarketCapMap();
+            int size = latest == null || latest.getData() == null ? 0 : latest.getData().size();
+            long cost = CoinMarketCapService.getCreditCost(size, CoinMarketCapService.MAP_COINS_PER_CREDIT);
+            if (cost > getRemainingCredits()) {
+                Log.warn("Not enough coin market cap credits left today to refresh the map");
+                return;
+            }
+            long before = coinMarketCapService.getCreditsUsed();
+            coinMarketCapService.refreshCoinMarketCapMap();
+            addCredits(coinMarketCapService.getCreditsUsed() - before);
+        } catch (RuntimeException e) {
+            Log.error("Unable to refresh the coin market cap map: {}", e.getMessage());
+        }
+    }
+
+    void refreshInfo() {
+        try {
+            Set<Integer> idSet = coinMarketCapService.getIdSet(visitor);
+            if (idSet.isEmpty()) {
+                return;
+            }
+            if (CoinMarketCapService.getCreditCost(idSet.size(), CoinMarketCapService.IDS_PER_CREDIT) > getRemainingCredits()) {
+                Log.warn("Not enough coin market cap credits left today to refresh the info for {} coins", idSet.size());
+                return;
+            }
+            long before = coinMarketCapService.getCreditsUsed();
+            coinMarketCapService.getCoinMarketCapInfoListing(idSet);
+            addCredits(coinMarketCapService.getCreditsUsed() - before);
+        } catch (RuntimeException e) {
+            Log.error("Unable to refresh the coin market cap info: {}", e.getMessage());
+        }
+    }
+
+    CoinMarketCapListing refreshQuotes() {
+        try {
+            long remaining = getRemainingCredits();
+            if (remaining <= 0) {
+                Log.warn("No coin market cap credits left today to refresh the quotes");
+                return null;
+            }
+            Set<Integer> idSet = coinMarketCapService.getIdSet(visitor);
+            if (idSet.isEmpty()) {
+                return null;
+            }
+            //each call gets up to 100 ids for a credit, so this is as many ids as the credits left will pay for
+            int maxIds = (int) Math.min(Integer.MAX_VALUE, remaining * CoinMarketCapService.IDS_PER_CREDIT);
+            long before = coinMarketCapService.getCreditsUsed();
+            CoinMarketCapListing listing = coinMarketCapService.refreshQuotes(idSet, maxIds);
+            long cost = coinMarketCapService.getCreditsUsed() - before;
+            addCredits(cost);
+            synchronized (this) {
+                lastQuoteCost = Math.max(1, cost);
+            }
+            Log.debug("Refreshed the coin market cap quotes for {} credits; {} credits left today", cost, getRemainingCredits());
+            return listing;
+        } catch (RuntimeException e) {
+            Log.error("Unable to refresh the coin market cap quotes: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the time until the next refresh of the quotes. This is the quote interval, unless refreshing that often
+     * would use up the credits before the end of the day - then the refreshes left are spread over the rest of the day.
+     *
+     * @return the time until the next refresh.
+     */
+    synchronized Duration getNextQuoteDelay() {
+        Instant now = clock.instant();
+        Instant tomorrow = LocalDate.ofInstant(now, ZoneOffset.UTC).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Duration untilTomorrow = Duration.between(now, tomorrow);
+        long refreshesLeft = getRemainingCredits() / lastQuoteCost;
+        if (refreshesLeft <= 0) {
+            return untilTomorrow;
+        }
+        Duration spread = untilTomorrow.dividedBy(refreshesLeft);
+        return spread.compareTo(quoteInterval) > 0 ? spread : quoteInterval;
+    }
+
+    private synchronized void addCredits(long credits) {
+        rollDay();
+        creditsToday += credits;
+    }
+
+    private synchronized long getRemainingCredits() {
+        rollDay();
+        return Math.max(0, dailyCredits - creditsToday);
+    }
+
+    private void rollDay() {
+        LocalDate today = LocalDate.ofInstant(clock.instant(), ZoneOffset.UTC);
+        if (!today.equals(day)) {
+            day = today;
+            creditsToday = 0;
+        }
+    }
+
+    public synchronized long getCreditsToday() {
+        rollDay();
+        return creditsToday;
+    }
+
+    public long getDailyCredits() {
+        return dailyCredits;
+    }
+}
@@ -0,0 +1,189 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A response from the coin market cap quotes or info api, read with a streaming parser.
+ * The response is read once, from start to end, and only the coins that were asked for, and only the fields
+ * that are used, are kept - the descriptions, urls, tags and other quotes in the response are skipped without
+ * being built into objects. This matters since, with thousands of ids, this is the largest response we read.
+ */
+class CoinMarketCapResponse {
+    //a JsonFactory is thread-safe, and is expensive to create
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private int errorCode;
+    private String errorMessage;
+    private long creditCount;
+    private boolean hasData;
+    private final List<CoinMarketCapData> data = new ArrayList<>();
+
+    private CoinMarketCapResponse() {
+    }
+
+    /**
+     * Parse a response.
+     *
+     * @param json the response.
+     * @param ids  the ids that were asked for - any other coins in the response are skipped.
+     * @return the response.
+     * @throws IOException if the response is not valid json.
+     */
+    static CoinMarketCapResponse parse(String json, Collection<Integer> ids) throws IOException {
+        CoinMarketCapResponse response = new CoinMarketCapResponse();
+        Set<Integer> wanted = new HashSet<>(ids);
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return response;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("status".equals(field) && token == JsonToken.START_OBJECT) {
+                    response.parseStatus(parser);
+                } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                    response.hasData = true;
+                    response.parseData(parser, wanted);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return response;
+    }
+
+    private void parseStatus(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "error_code":
+                    errorCode = parser.getValueAsInt();
+                    break;
+                case "error_message":
+                    errorMessage = parser.getValueAsString();
+                    break;
+                case "credit_count":
+                    creditCount = parser.getValueAsLong();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private void parseData(JsonParser parser, Set<Integer> wanted) throws IOException {
+        //the data is an object with a field for each id, such as "1" for BTC
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Integer id = toId(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT && id != null && wanted.contains(id)) {
+                data.add(parseCoin(parser, id));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static CoinMarketCapData parseCoin(JsonParser parser, int id) throws IOException {
+        CoinMarketCapData coin = new CoinMarketCapData();
+        coin.setId(id);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id":
+                    coin.setId(parser.getValueAsInt(id));
+                    break;
+                case "name":
+                    coin.setName(parser.getValueAsString());
+                    break;
+                case "symbol":
+                    coin.setSymbol(parser.getValueAsString());
+                    break;
+                case "logo":
+                    coin.setLogo(parser.getValueAsString());
+                    break;
+                case "date_added":
+                    coin.setDateAdded(parser.getValueAsString());
+                    break;
+                case "quote":
+                    if (token == JsonToken.START_OBJECT) {
+                        parseQuote(parser, coin);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return coin;
+    }
+
+    private static void parseQuote(JsonParser parser, CoinMarketCapData coin) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String currency = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!"USD".equals(currency) || token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("market_cap".equals(field)) {
+                    coin.setMarketCap(parser.getValueAsDouble());
+                } else if ("volume_24h".equals(field)) {
+                    coin.setVolume24HrUsd(parser.getValueAsDouble());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static Integer toId(String field) {
+        try {
+            return Integer.valueOf(field);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    int getErrorCode() {
+        return errorCode;
+    }
+
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    long getCreditCount() {
+        return creditCount;
+    }
+
+    /**
+     * @return true if the response has data - a response without data is an error.
+     */
+    boolean hasData() {
+        return hasData;
+    }
+
+    /**
+     * @return the data for the ids that were asked for and are in the response - an id that is missing is left out.
+     */
+    List<CoinMarketCapData> getData() {
+        return data;
+    }
+}
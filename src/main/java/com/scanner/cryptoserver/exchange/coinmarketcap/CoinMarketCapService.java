@@ -1,23 +1,28 @@
 package com.scanner.cryptoserver.exchange.coinmarketcap;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapData;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo;
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
 import com.scanner.cryptoserver.util.CacheUtil;
-import com.scanner.cryptoserver.util.dto.Coin;
 import org.apache.http.NameValuePair;
 import org.apache.http.message.BasicNameValuePair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -32,15 +37,103 @@ public class CoinMarketCapService {
     private static final String LISTING = "Listing";
     private static final String INFO = "Info";
     private static final String EXCHANGE_INFO = "ExchangeInfo";
+    //the number of ids in each call to the coin market cap api - this keeps the URL well under the length limit
+    static final int ID_BATCH_SIZE = 100;
+    //the quotes and info apis cost a credit for every 100 ids (or part of 100)
+    public static final int IDS_PER_CREDIT = 100;
+    //the map api costs a credit for every 5000 coins (or part of 5000)
+    public static final int MAP_COINS_PER_CREDIT = 5000;
+    //the number of calls to the coin market cap api that are made at the same time
+    private static final int MAX_CONCURRENT_CALLS = 4;
+    //the error code the coin market cap api returns for a bad parameter, such as an id that it won't accept
+    private static final int BAD_REQUEST = 400;
 
     private final CoinMarketCapApiService coinMarketCapApiService;
     private final CacheUtil cacheUtil;
+    private final ExecutorService apiExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_CALLS, runnable -> {
+        Thread thread = new Thread(runnable, "coin-market-cap");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //ids that the coin market cap api rejected - these are not asked for again
+    private final Set<Integer> badIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong creditsUsed = new AtomicLong();
+    //every coin's quote is refreshed within this time - each refresh gets the quotes for a slice of the coins
+    @Value("${exchanges.coinmarketcap.quote-rotation:6h}")
+    private Duration quoteRotation = Duration.ofHours(6);
+    //the latest quotes listing, which the next refresh builds on
+    private volatile CoinMarketCapListing latestQuotes;
+    //the latest coin market cap map, which has the id, symbol and name of every coin
+    private volatile CoinMarketCapListing latestMap;
+    private long latestQuotesAt;
+    //the last id in the latest slice of rotated quotes - the next slice starts after it
+    private int lastRotatedId;
+    //the latest id set for all the coins on the exchanges
+    private volatile IdSetVersion idSetVersion;
+
+    /**
+     * An id set, with the exchange info and coin market cap map it was made from. The exchange info and the map
+     * are replaced as a whole when they change (they are never changed in place), so the id set is the same
+     * for as long as they are the same objects.
+     */
+    private static class IdSetVersion {
+        private final List<ExchangeInfo> exchangeInfos;
+        private final CoinMarketCapListing coinMarketCap;
+        private final ExchangeVisitor visitor;
+        private final Set<Integer> idSet;
+
+        private IdSetVersion(List<ExchangeInfo> exchangeInfos, CoinMarketCapListing coinMarketCap, ExchangeVisitor visitor, Set<Integer> idSet) {
+            this.exchangeInfos = exchangeInfos;
+            this.coinMarketCap = coinMarketCap;
+            this.visitor = visitor;
+            this.idSet = idSet;
+        }
+
+        private boolean isFor(List<ExchangeInfo> exchangeInfos, CoinMarketCapListing coinMarketCap, ExchangeVisitor visitor) {
+            if (this.coinMarketCap != coinMarketCap || this.visitor != visitor || this.exchangeInfos.size() != exchangeInfos.size()) {
+                return false;
+            }
+            for (int i = 0; i < exchangeInfos.size(); i++) {
+                if (this.exchangeInfos.get(i) != exchangeInfos.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 
     public CoinMarketCapService(CoinMarketCapApiService coinMarketCapApiService, CacheUtil cacheUtil) {
         this.coinMarketCapApiService = coinMarketCapApiService;
         this.cacheUtil = cacheUtil;
     }
 
+    @PreDestroy
+    public void shutdown() {
+        apiExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the number of calls made to the coin market cap quotes and info apis.
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * @return the coin market cap api credits used by the quotes and info calls, as reported by the api.
+     */
+    public long getCreditsUsed() {
+        return creditsUsed.get();
+    }
+
+    /**
+     * @return the ids that the coin market cap api rejected, which are left out of the calls.
+     */
+    public Set<Integer> getBadIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(badIds));
+    }
+
     /**
      * Get a set of IDs that represent coins. Use the exchange info from the exchange services to get the coin names.
      *
@@ -49,16 +142,23 @@ public class CoinMarketCapService {
      * @return a Set of IDs.
      */
     public Set<Integer> getIdSet(ExchangeVisitor visitor) {
-        Set<String> coinSet = new HashSet<>();
         //get the exchange info for all exchanges - this is to get a list of coins to retrieve the market cap for each coin
+        List<ExchangeInfo> exchangeInfos = new ArrayList<>();
         cacheUtil.getExchangeNames().forEach(exchangeName -> {
             String name = exchangeName + "-" + EXCHANGE_INFO;
-            ExchangeInfo exchangeInfo = cacheUtil.retrieveExchangeInfoFromCache(exchangeName, EXCHANGE_INFO, name);
-            if (exchangeInfo != null) {
-                coinSet.addAll(exchangeInfo.getCoins().stream().map(Coin::getBaseAsset).collect(Collectors.toSet()));
-            }
+            exchangeInfos.add(cacheUtil.retrieveExchangeInfoFromCache(exchangeName, EXCHANGE_INFO, name));
         });
-        return getIdSet(coinSet, visitor);
+        CoinMarketCapListing coinMarketCap = getCachedCoinMarketCapMap();
+        IdSetVersion version = idSetVersion;
+        if (version != null && version.isFor(exchangeInfos, coinMarketCap, visitor)) {
+            return version.idSet;
+        }
+        Set<String> coinSet = new HashSet<>();
+        exchangeInfos.stream().filter(Objects::nonNull)
+                .forEach(exchangeInfo -> exchangeInfo.getCoins().forEach(coin -> coinSet.add(coin.getBaseAsset())));
+        Set<Integer> idSet = Collections.unmodifiableSet(getIdSet(coinSet, visitor, coinMarketCap));
+        idSetVersion = new IdSetVersion(exchangeInfos, coinMarketCap, visitor, idSet);
+        return idSet;
     }
 
     /**
@@ -70,9 +170,71 @@ public class CoinMarketCapService {
      * @return the set of Ids, based on the Coin Market Cap service.
      */
     public Set<Integer> getIdSet(Set<String> coinSet, ExchangeVisitor visitor) {
-        Supplier<CoinMarketCapListing> supplier = coinMarketCapApiService::getCoinMarketCapMap;
-        CoinMarketCapListing coinMarketCap = cacheUtil.retrieveFromCache(COIN_MARKET_CAP, MARKET_CAP_MAP, supplier);
+        return getIdSet(coinSet, visitor, getCachedCoinMarketCapMap());
+    }
+
+    /**
+     * Get the latest coin market cap map, which has the id, symbol and name of every coin.
+     * This never calls the coin market cap api - the map is refreshed by the CoinMarketCapRefresher.
+     *
+     * @return the map, or null if it hasn't been retrieved yet (or loaded from the cache snapshot).
+     */
+    public CoinMarketCapListing getCachedCoinMarketCapMap() {
+        CoinMarketCapListing map = latestMap;
+        return map != null ? map : cacheUtil.retrieveFromCache(COIN_MARKET_CAP, MARKET_CAP_MAP, null);
+    }
 
+    /**
+     * Get when the coin market cap map in the cache was retrieved - it may have been loaded from the cache snapshot.
+     *
+     * @return when the map was retrieved, in epoch milliseconds, or 0 if it isn't in the cache.
+     */
+    public long getCoinMarketCapMapLoadedAt() {
+        return cacheUtil.getLoadedAt(COIN_MARKET_CAP, MARKET_CAP_MAP);
+    }
+
+    /**
+     * Get when the coin market cap info listing in the cache was retrieved - it may have been loaded from the cache snapshot.
+     *
+     * @return when the info was retrieved, in epoch milliseconds, or 0 if it isn't in the cache.
+     */
+    public long getCoinMarketCapInfoLoadedAt() {
+        return cacheUtil.getLoadedAt(COIN_MARKET_CAP, INFO);
+    }
+
+    /**
+     * Get the coin market cap map from the api, which has the id, symbol and name of every coin.
+     *
+     * @return the map.
+     */
+    public CoinMarketCapListing refreshCoinMarketCapMap() {
+        CoinMarketCapListing map = coinMarketCapApiService.getCoinMarketCapMap();
+        callCount.incrementAndGet();
+        int size = map == null || map.getData() == null ? 0 : map.getData().size();
+        creditsUsed.addAndGet(getCreditCost(size, MAP_COINS_PER_CREDIT));
+        if (map != null) {
+            latestMap = map;
+            cacheUtil.putInCache(COIN_MARKET_CAP, MARKET_CAP_MAP, map);
+        }
+        return map;
+    }
+
+    /**
+     * Get the credits that a coin market cap api call costs.
+     *
+     * @param count    the number of ids in the call, or the number of coins returned.
+     * @param perCredit the number of ids or coins for each credit.
+     * @return the credits - a call costs at least one credit.
+     */
+    public static long getCreditCost(int count, int perCredit) {
+        return Math.max(1, (count + perCredit - 1) / perCredit);
+    }
+
+    private Set<Integer> getIdSet(Set<String> coinSet, ExchangeVisitor visitor, CoinMarketCapListing coinMarketCap) {
+        if (coinMarketCap == null) {
+            //the map hasn't been retrieved yet
+            return new HashSet<>();
+        }
         //now get a set of ids for the coins in the exchanges
         //note: there can be duplicate symbols in there, such as "UNI" (Universe) and "UNI" (Uniswap)
         Set<Integer> idSet = new HashSet<>();
@@ -80,22 +242,19 @@ public class CoinMarketCapService {
             Set<Integer> ids = coinMarketCap.findData(coin, visitor).stream().map(CoinMarketCapData::getId).collect(Collectors.toSet());
             idSet.addAll(ids);
         });
-        //Note. Id of 6999 is causing the coin market cap API to return a 400 error.
-        //Remove it out for now.
-        idSet.remove(6999);
         return idSet;
     }
 
     /**
-     * Get a Coin Market Cap listing, which contains the Ids mapped to the Coin Market Cap data for each coin.
+     * Get the latest Coin Market Cap listing, which contains the Ids mapped to the Coin Market Cap data for each coin.
+     * This never calls the coin market cap api - the listing is refreshed by the CoinMarketCapRefresher -
+     * so it is safe to call while loading the exchange info.
      *
-     * @param visitor the exchange visitor used to use an alternate symbol to
-     *                match what the coin market cap is expecting.
-     * @return the listing, which contains the map.
+     * @return the listing, or null if it hasn't been retrieved yet (or loaded from the cache snapshot).
      */
-    public CoinMarketCapListing getCoinMarketCapListing(ExchangeVisitor visitor) {
-        Set<Integer> idSet = getIdSet(visitor);
-        return getCoinMarketCapListing(idSet);
+    public CoinMarketCapListing getCachedCoinMarketCapListing() {
+        CoinMarketCapListing listing = latestQuotes;
+        return listing != null ? listing : cacheUtil.retrieveFromCache(COIN_MARKET_CAP, LISTING, null);
     }
 
     /**
@@ -118,7 +277,7 @@ public class CoinMarketCapService {
      * @param data the list of coins that will have the market cap data set.
      */
     public void setMarketCapDataFor24HrData(ExchangeVisitor visitor, List<CoinDataFor24Hr> data) {
-        CoinMarketCapListing coinMarketCap = getCoinMarketCapListing(visitor);
+        CoinMarketCapListing coinMarketCap = getCachedCoinMarketCapListing();
         //If the coin market cap data exists, then update each symbol with the market cap value found in the market cap data.
         if (coinMarketCap != null) {
             data.forEach(d -> d.addMarketCapData(visitor, coinMarketCap));
@@ -135,132 +294,173 @@ public class CoinMarketCapService {
     }
 
     /**
-     * Make the call to retrieve the coin market cap listing.
+     * Refresh the quotes listing. Rather than get the quotes for every coin, this gets the quotes for the coins that are new
+     * since the last refresh, and for a slice of the other coins - the slice is sized so that every coin is refreshed
+     * within the quote rotation time. The quotes are merged with the latest listing into a new listing;
+     * the latest listing, which may be in use, is not changed. So the credits used stay about the same as coins are added.
      *
-     * @param idSet       the set of Ids that will be used to retrieve the data.
-     * @param isForQuotes true if calling for exchange quotes, false if calling simply for exchange info.
-     * @return the coin market cap listing.
+     * @param idSet  the ids of the coins that are on the exchanges.
+     * @param maxIds the most ids to get quotes for, such as to stay within the credits left for the day.
+     * @return the new listing.
      */
-    private CoinMarketCapListing callCoinMarketCapListing(Set<Integer> idSet, boolean isForQuotes) {
-        Supplier<CoinMarketCapListing> marketCapSupplier = () -> {
-            List<NameValuePair> parameters = new ArrayList<>();
+    public synchronized CoinMarketCapListing refreshQuotes(Set<Integer> idSet, int maxIds) {
+        long now = System.currentTimeMillis();
+        Map<Integer, CoinMarketCapData> latest = new HashMap<>();
+        if (latestQuotes != null && latestQuotes.getData() != null) {
+            latestQuotes.getData().values().forEach(d -> latest.put(d.getId(), d));
+        }
+        List<Integer> ids = idSet.stream().filter(id -> !badIds.contains(id)).sorted().collect(Collectors.toList());
+        Set<Integer> wanted = ids.stream().filter(id -> !latest.containsKey(id)).limit(maxIds).collect(Collectors.toCollection(TreeSet::new));
+        List<Integer> existing = ids.stream().filter(latest::containsKey).collect(Collectors.toList());
+        long elapsed = latestQuotes == null ? quoteRotation.toMillis() : now - latestQuotesAt;
+        wanted.addAll(getRotationSlice(existing, elapsed, maxIds - wanted.size()));
 
-            //convert ids to comma separated String
-            String value = idSet.stream().map(String::valueOf).collect(Collectors.joining(","));
-            parameters.add(new BasicNameValuePair("id", value));
+        Map<Integer, CoinMarketCapData> merged = new HashMap<>();
+        //coins that are no longer on an exchange are dropped
+        existing.forEach(id -> merged.put(id, latest.get(id)));
+        getData(wanted, true).forEach(d -> merged.put(d.getId(), d));
+        Log.debug("Refreshed coin market cap quotes for {} of {} coins", wanted.size(), ids.size());
 
-            String json;
-            if (isForQuotes) {
-                json = coinMarketCapApiService.makeExchangeQuotesApiCall(parameters);
-            } else {
-                json = coinMarketCapApiService.makeInfoApiCall(parameters);
-            }
-            List<CoinMarketCapData> data = parseJsonData(json, idSet);
-            CoinMarketCapListing coinMarketCapListing = new CoinMarketCapListing();
-            coinMarketCapListing = coinMarketCapListing.convertToCoinMarketCapListing(data);
-            return coinMarketCapListing;
-        };
-        CoinMarketCapListing coinMarketCap;
-        if (isForQuotes) {
-            coinMarketCap = cacheUtil.retrieveFromCache(COIN_MARKET_CAP, LISTING, marketCapSupplier);
-        } else {
-            coinMarketCap = cacheUtil.retrieveFromCache(COIN_MARKET_CAP, INFO, marketCapSupplier);
-        }
-        return coinMarketCap;
+        CoinMarketCapListing listing = new CoinMarketCapListing();
+        listing.setData(Collections.unmodifiableMap(merged));
+        listing.getIndex();
+        latestQuotes = listing;
+        latestQuotesAt = now;
+        cacheUtil.putInCache(COIN_MARKET_CAP, LISTING, listing);
+        return listing;
     }
 
     /**
-     * Get the coin market cap data/quotes listing based on the ids passed in.
-     * This will retrieve it from the cache if it is in there. If not in the cache, the coin market cap api
-     * will be called to supply the data.
+     * Get the coin market cap quotes listing from the api, based on the ids passed in.
      *
      * @param idSet a set of ids.
      * @return the market cap data for the coins.
      */
     public CoinMarketCapListing getCoinMarketCapListing(Set<Integer> idSet) {
-        return callCoinMarketCapListing(idSet, true);
+        return refreshQuotes(idSet, Integer.MAX_VALUE);
     }
 
     /**
-     * Get the coin market cap info listing based on the ids passed in.
-     * This will retrieve it from the cache if it is in there. If not in the cache, the coin market cap api
-     * will be called to supply the data.
+     * Get the coin market cap info listing from the api, based on the ids passed in.
      *
      * @param idSet a set of ids.
      * @return the market cap data for the coins.
      */
     public CoinMarketCapListing getCoinMarketCapInfoListing(Set<Integer> idSet) {
-        return callCoinMarketCapListing(idSet, false);
+        List<CoinMarketCapData> data = getData(idSet, false);
+        CoinMarketCapListing listing = new CoinMarketCapListing().convertToCoinMarketCapListing(data);
+        cacheUtil.putInCache(COIN_MARKET_CAP, INFO, listing);
+        return listing;
     }
 
-    private Optional<JsonNode> parseJson(String json) {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode jsonNode;
-        try {
-            jsonNode = mapper.readTree(json);
-        } catch (JsonProcessingException e) {
-            Log.error("Cannot parse json from CMC api call: {}", e.getMessage());
-            return Optional.empty();
+    /**
+     * Get the next slice of coins to refresh, which starts after the last coin that was refreshed.
+     *
+     * @param existing the ids of the coins in the latest listing, sorted.
+     * @param elapsed  the time since the last refresh, in milliseconds.
+     * @param maxSize  the most ids in the slice.
+     * @return the ids in the slice.
+     */
+    private List<Integer> getRotationSlice(List<Integer> existing, long elapsed, int maxSize) {
+        if (existing.isEmpty() || maxSize <= 0) {
+            return new ArrayList<>();
+        }
+        long rotationMillis = Math.max(quoteRotation.toMillis(), 1);
+        //at least one coin is refreshed each time, so that the rotation always moves on
+        long due = Math.max(1, (long) Math.ceil((double) existing.size() * elapsed / rotationMillis));
+        int size = (int) Math.min(Math.min(existing.size(), due), maxSize);
+        int start = 0;
+        while (start < existing.size() && existing.get(start) <= lastRotatedId) {
+            start++;
+        }
+        List<Integer> slice = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            slice.add(existing.get((start + i) % existing.size()));
         }
-        JsonNode data = jsonNode.get("data");
-        return Optional.ofNullable(data);
+        if (!slice.isEmpty()) {
+            lastRotatedId = slice.get(slice.size() - 1);
+        }
+        return slice;
     }
 
-    private List<CoinMarketCapData> parseJsonData(String json, Set<Integer> idSet) {
-        Optional<JsonNode> jsonNode = parseJson(json);
-        if (jsonNode.isEmpty()) {
-            return new ArrayList<>();
+    /**
+     * Get the coin market cap data for a set of ids. The ids are split into batches, which are retrieved at the same time
+     * (up to a limit), so that no single call has a URL that is too long.
+     *
+     * @param idSet       the set of Ids that will be used to retrieve the data.
+     * @param isForQuotes true if calling for exchange quotes, false if calling simply for exchange info.
+     * @return the data for the ids that were found.
+     */
+    private List<CoinMarketCapData> getData(Set<Integer> idSet, boolean isForQuotes) {
+        List<Integer> ids = idSet.stream().filter(id -> !badIds.contains(id)).sorted().collect(Collectors.toList());
+        List<CompletableFuture<List<CoinMarketCapData>>> batches = new ArrayList<>();
+        for (List<Integer> batch : Lists.partition(ids, ID_BATCH_SIZE)) {
+            batches.add(CompletableFuture.supplyAsync(() -> getBatch(batch, isForQuotes), apiExecutor));
         }
-        JsonNode data = jsonNode.get();
-        List<CoinMarketCapData> list = new ArrayList<>();
-
-        idSet.forEach(idNum -> {
-            JsonNode node = data.get(String.valueOf(idNum));
-            JsonNode idNode = node.get("id");
-            int id = idNode.asInt();
-
-            JsonNode nameNode = node.get("name");
-            String name = nameNode.textValue();
+        List<CoinMarketCapData> data = new ArrayList<>();
+        batches.forEach(batch -> data.addAll(batch.join()));
+        return data;
+    }
 
-            String logo = null;
-            JsonNode logoNode = node.get("logo");
-            if (logoNode != null) {
-                logo = logoNode.textValue();
-            }
+    /**
+     * Get the coin market cap data for a batch of ids. If the api rejects the batch because of a bad id,
+     * the batch is split in half and each half is tried, until the bad id is found - so that one bad id
+     * doesn't lose the data for every other coin.
+     *
+     * @param ids         the ids.
+     * @param isForQuotes true if calling for exchange quotes, false if calling simply for exchange info.
+     * @return the data for the ids that were found.
+     */
+    private List<CoinMarketCapData> getBatch(List<Integer> ids, boolean isForQuotes) {
+        List<NameValuePair> parameters = new ArrayList<>();
+        //convert ids to comma separated String
+        String value = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        parameters.add(new BasicNameValuePair("id", value));
 
-            JsonNode symbolNode = node.get("symbol");
-            String symbol = symbolNode.textValue();
-
-            JsonNode dateAddedNode = node.get("date_added");
-            String dateAdded = dateAddedNode.textValue();
-
-            JsonNode quoteNode = node.get("quote");
-            double volume24HrUsd = 0.0;
-            double marketCap = 0.0;
-            if (quoteNode != null) {
-                JsonNode usdNode = quoteNode.get("USD");
-                if (usdNode != null) {
-                    JsonNode marketCapNode = usdNode.get("market_cap");
-                    if (marketCapNode != null) {
-                        marketCap = marketCapNode.asDouble();
-                    }
-                    JsonNode volume24HrNode = usdNode.get("volume_24h");
-                    if (volume24HrNode != null) {
-                        volume24HrUsd = volume24HrNode.asDouble();
-                    }
-                }
+        String json;
+        try {
+            if (isForQuotes) {
+                json = coinMarketCapApiService.makeExchangeQuotesApiCall(parameters);
+            } else {
+                json = coinMarketCapApiService.makeInfoApiCall(parameters);
             }
+        } catch (RuntimeException e) {
+            Log.error("Cannot make coin market cap api call: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+        callCount.incrementAndGet();
+        if (json == null) {
+            //the call failed, and that was already logged
+            return new ArrayList<>();
+        }
+        CoinMarketCapResponse response;
+        try {
+            response = CoinMarketCapResponse.parse(json, ids);
+        } catch (IOException e) {
+            Log.error("Cannot parse json from CMC api call: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+        //the api reports the credits used - if it doesn't, they are worked out from the number of ids
+        long credits = response.getCreditCount() > 0 || !response.hasData() ? response.getCreditCount() : getCreditCost(ids.size(), IDS_PER_CREDIT);
+        creditsUsed.addAndGet(credits);
+        Log.debug("Coin market cap api call for {} ids used {} credits", ids.size(), credits);
 
-            CoinMarketCapData d = new CoinMarketCapData();
-            d.setId(id);
-            d.setName(name);
-            d.setSymbol(symbol);
-            d.setMarketCap(marketCap);
-            d.setVolume24HrUsd(volume24HrUsd);
-            d.setLogo(logo);
-            d.setDateAdded(dateAdded);
-            list.add(d);
-        });
+        if (response.hasData()) {
+            return response.getData();
+        }
+        String message = response.getErrorMessage();
+        if (response.getErrorCode() != BAD_REQUEST) {
+            Log.error("Coin market cap api call failed: {}", message);
+            return new ArrayList<>();
+        }
+        if (ids.size() == 1) {
+            badIds.add(ids.get(0));
+            Log.warn("Coin market cap api rejected id {}, which will be left out: {}", ids.get(0), message);
+            return new ArrayList<>();
+        }
+        int half = ids.size() / 2;
+        List<CoinMarketCapData> list = getBatch(ids.subList(0, half), isForQuotes);
+        list.addAll(getBatch(ids.subList(half, ids.size()), isForQuotes));
         return list;
     }
 }
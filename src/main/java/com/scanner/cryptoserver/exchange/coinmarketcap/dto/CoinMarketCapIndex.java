@@ -0,0 +1,102 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap.dto;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable lookup index over the data in a coin market cap listing.
+ * The index is built once when the listing is created, so that lookups by symbol, name or id
+ * are constant time (or a binary search, for the id) instead of a scan over the thousands of coins in the listing.
+ */
+public class CoinMarketCapIndex {
+    private final ImmutableListMultimap<String, CoinMarketCapData> bySymbol;
+    private final ImmutableListMultimap<String, CoinMarketCapData> byName;
+    //the ids, sorted, and the data for each id at the same position - this avoids boxing an Integer for each lookup
+    private final int[] ids;
+    private final CoinMarketCapData[] dataById;
+
+    private CoinMarketCapIndex(ImmutableListMultimap<String, CoinMarketCapData> bySymbol, ImmutableListMultimap<String, CoinMarketCapData> byName,
+                               int[] ids, CoinMarketCapData[] dataById) {
+        this.bySymbol = bySymbol;
+        this.byName = byName;
+        this.ids = ids;
+        this.dataById = dataById;
+    }
+
+    /**
+     * Build an index for the data in a listing.
+     *
+     * @param data the coin market cap data.
+     * @return the index.
+     */
+    public static CoinMarketCapIndex of(Collection<CoinMarketCapData> data) {
+        ImmutableListMultimap.Builder<String, CoinMarketCapData> bySymbol = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, CoinMarketCapData> byName = ImmutableListMultimap.builder();
+        List<CoinMarketCapData> sorted = new ArrayList<>();
+
+        if (data != null) {
+            for (CoinMarketCapData d : data) {
+                if (d == null) {
+                    continue;
+                }
+                if (d.getSymbol() != null) {
+                    bySymbol.put(d.getSymbol(), d);
+                }
+                if (d.getName() != null) {
+                    byName.put(d.getName(), d);
+                }
+                sorted.add(d);
+            }
+        }
+        //the sort is stable, so the first data for an id wins
+        sorted.sort(Comparator.comparingInt(CoinMarketCapData::getId));
+        int[] ids = new int[sorted.size()];
+        CoinMarketCapData[] dataById = new CoinMarketCapData[sorted.size()];
+        int count = 0;
+        for (CoinMarketCapData d : sorted) {
+            if (count == 0 || ids[count - 1] != d.getId()) {
+                ids[count] = d.getId();
+                dataById[count] = d;
+                count++;
+            }
+        }
+        return new CoinMarketCapIndex(bySymbol.build(), byName.build(), Arrays.copyOf(ids, count), Arrays.copyOf(dataById, count));
+    }
+
+    public Optional<CoinMarketCapData> getData(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? Optional.empty() : Optional.of(dataById[index]);
+    }
+
+    /**
+     * Get the data for a coin, by symbol (i.e. "BTC") or name (i.e. "Bitcoin") - the same coins as CoinMarketCapData.isCoin().
+     * The coins found by symbol are first.
+     *
+     * @param coin the coin symbol or name.
+     * @return the data for the coin - a symbol, such as "UNI", can be in the listing more than once.
+     */
+    public List<CoinMarketCapData> getCoins(String coin) {
+        if (coin == null) {
+            return ImmutableList.of();
+        }
+        ImmutableList<CoinMarketCapData> symbols = bySymbol.get(coin);
+        ImmutableList<CoinMarketCapData> names = byName.get(coin);
+        if (names.isEmpty()) {
+            return symbols;
+        }
+        if (symbols.isEmpty()) {
+            return names;
+        }
+        ImmutableList.Builder<CoinMarketCapData> coins = ImmutableList.<CoinMarketCapData>builder().addAll(symbols);
+        //a coin with the same symbol and name is already in the list
+        names.stream().filter(d -> !coin.equals(d.getSymbol())).forEach(coins::add);
+        return coins.build();
+    }
+}
@@ -1,14 +1,79 @@
 package com.scanner.cryptoserver.exchange.coinmarketcap.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 @Data
 public class CoinMarketCapListing {
     private Map<Integer, CoinMarketCapData> data = new HashMap<>();
+    //lookup index for the data - built when the listing is created, or the first time it is needed
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile CoinMarketCapIndex index;
+    //the join of each exchange's coins to the data, by exchange visitor
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final ConcurrentMap<ExchangeVisitor, MarketCapJoin> joins = new ConcurrentHashMap<>();
+
+    public void setData(Map<Integer, CoinMarketCapData> data) {
+        this.data = data;
+        //the index is for the old data
+        this.index = null;
+        this.joins.clear();
+    }
+
+    /**
+     * Get the join of an exchange's coins to the data in this listing.
+     *
+     * @param exchangeVisitor the visitor of the exchange, which maps the exchange's coins to the coin market cap coins.
+     * @return the join.
+     */
+    @JsonIgnore
+    public MarketCapJoin getJoin(ExchangeVisitor exchangeVisitor) {
+        return joins.computeIfAbsent(exchangeVisitor, visitor -> new MarketCapJoin(this, visitor));
+    }
+
+    /**
+     * Get the lookup index for the data. If the index has not been built yet, then it is built here.
+     *
+     * @return the index.
+     */
+    @JsonIgnore
+    public CoinMarketCapIndex getIndex() {
+        CoinMarketCapIndex current = index;
+        if (current == null) {
+            current = CoinMarketCapIndex.of(data == null ? null : data.values());
+            index = current;
+        }
+        return current;
+    }
+
+    /**
+     * Find the coin market cap data for a coin market cap id.
+     *
+     * @param id the coin market cap id, such as 1 for "BTC".
+     * @return the coin market cap data, if found.
+     */
+    public Optional<CoinMarketCapData> findData(int id) {
+        return getIndex().getData(id);
+    }
 
     /**
      * Convert a coin market cap data list to a coin market cap listing.
@@ -24,6 +89,8 @@ public class CoinMarketCapListing {
         }
         Map<Integer, CoinMarketCapData> map = dataList.stream().collect(Collectors.toMap(CoinMarketCapData::getId, d -> d));
         coinMarketCapListing.setData(map);
+        //build the index now, while the listing is being loaded into the cache, rather than on the first lookup
+        coinMarketCapListing.getIndex();
         return coinMarketCapListing;
     }
 
@@ -38,13 +105,9 @@ public class CoinMarketCapListing {
      * @return return the coin market cap data, if found.
      */
     public Optional<CoinMarketCapData> findData(String symbol, String name) {
-        if (data != null) {
-            return data.values().stream()
-                    .filter(d -> d.isCoin(symbol))
-                    .filter(d -> name.isEmpty() || d.isCoin(name))
-                    .findAny();
-        }
-        return Optional.empty();
+        return getIndex().getCoins(symbol).stream()
+                .filter(d -> name.isEmpty() || d.isCoin(name))
+                .findFirst();
     }
 
     /**
@@ -56,9 +119,6 @@ public class CoinMarketCapListing {
      * @return a list of data for the symbol.
      */
     public List<CoinMarketCapData> findData(String symbol, ExchangeVisitor visitor) {
-        if (data != null) {
-            return data.values().stream().filter(d -> d.isCoin(visitor.getSymbol(symbol))).collect(Collectors.toList());
-        }
-        return new ArrayList<>();
+        return new ArrayList<>(getIndex().getCoins(visitor.getSymbol(symbol)));
     }
 }
@@ -1,14 +1,86 @@
 package com.scanner.cryptoserver.exchange.coinmarketcap.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
 import com.scanner.cryptoserver.util.dto.Coin;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * The coins on an exchange. The exchange info in the cache is a snapshot (see snapshotOf()): its coins are already
+ * filtered to the USA-based markets, its index is built, and it is never changed - a change, such as new market caps,
+ * makes a new snapshot that replaces the old one in the cache. So the exchange info can be read by any number of
+ * threads without locking, and without any work for each read.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ExchangeInfo {
     private List<Coin> coins;
+    //lookup index for the coins - built when the exchange info is loaded into the cache
+    @JsonIgnore
+    private volatile SymbolIndex index;
+    //true for a snapshot, which can't be changed
+    @JsonIgnore
+    private boolean snapshot;
+    //true if the snapshot has the market cap and id of the coins from the coin market cap listing
+    @JsonIgnore
+    private boolean marketCapsSet;
+
+    /**
+     * Create an exchange info snapshot. The coins that are not in a USA-based market are removed, and the index is built.
+     *
+     * @param coins         the coins on the exchange - these are not changed.
+     * @param nonUsaMarkets the quote assets (markets) that are not USA-based, such as "EUR".
+     * @return the snapshot.
+     */
+    public static ExchangeInfo snapshotOf(List<Coin> coins, Collection<String> nonUsaMarkets) {
+        List<Coin> usaCoins = coins == null ? Collections.emptyList() : coins.stream()
+                .filter(coin -> !nonUsaMarkets.contains(coin.getQuoteAsset()))
+                .collect(Collectors.toList());
+        ExchangeInfo info = new ExchangeInfo();
+        info.coins = Collections.unmodifiableList(usaCoins);
+        info.snapshot = true;
+        info.buildIndex(nonUsaMarkets);
+        return info;
+    }
+
+    /**
+     * Create a new snapshot with the market cap and id of each coin set from a coin market cap listing.
+     * The coins are copied - this exchange info is not changed.
+     *
+     * @param exchangeVisitor used to determine which exact coin is wanted, given a list of coins with the same symbol.
+     * @param listing         the coin market cap listing.
+     * @param nonUsaMarkets   the quote assets (markets) that are not USA-based, such as "EUR".
+     * @return the new snapshot.
+     */
+    public ExchangeInfo withMarketCaps(ExchangeVisitor exchangeVisitor, CoinMarketCapListing listing, Collection<String> nonUsaMarkets) {
+        List<Coin> copies = new ArrayList<>();
+        if (coins != null) {
+            coins.forEach(coin -> {
+                Coin copy = coin.copy();
+                copy.addMarketCapAndId(exchangeVisitor, listing);
+                copies.add(copy);
+            });
+        }
+        ExchangeInfo info = snapshotOf(copies, nonUsaMarkets);
+        info.marketCapsSet = true;
+        return info;
+    }
+
+    @JsonIgnore
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    @JsonIgnore
+    public boolean isMarketCapsSet() {
+        return marketCapsSet;
+    }
 
     @JsonProperty("symbols")
     public List<Coin> getCoins() {
@@ -18,5 +90,31 @@ public class ExchangeInfo {
     @JsonProperty("symbols")
     public void setCoins(List<Coin> coins) {
         this.coins = coins;
+        index = null;
+    }
+
+    /**
+     * Build the symbol index for the coins. This should be called once when the exchange info is loaded,
+     * and again if the coin list is modified.
+     *
+     * @param nonUsaMarkets the quote assets (markets) that are not USA-based, such as "EUR".
+     * @return the index.
+     */
+    public SymbolIndex buildIndex(Collection<String> nonUsaMarkets) {
+        SymbolIndex newIndex = SymbolIndex.of(coins, nonUsaMarkets);
+        index = newIndex;
+        return newIndex;
+    }
+
+    /**
+     * Get the symbol index for the coins. If the index has not been built yet, then it is built here.
+     *
+     * @param nonUsaMarkets the quote assets (markets) that are not USA-based, such as "EUR".
+     * @return the index.
+     */
+    @JsonIgnore
+    public SymbolIndex getIndex(Collection<String> nonUsaMarkets) {
+        SymbolIndex current = index;
+        return current == null ? buildIndex(nonUsaMarkets) : current;
     }
 }
@@ -0,0 +1,52 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap.dto;
+
+import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Joins the coins (base assets, such as "BTC") of an exchange to their coin market cap data, for one listing.
+ * The exchange visitor maps a base asset to the coin market cap symbol and name (for example, "BQX" is "VGX",
+ * and "UNI" is "Uniswap") - that is done once for each base asset, the first time it is looked up,
+ * so that setting the market cap of a coin is a single hash lookup.
+ * A join belongs to its listing: a new listing has a new join.
+ */
+public class MarketCapJoin {
+    //marks a base asset that is not in the listing, so that it isn't looked up again
+    private static final CoinMarketCapData NONE = new CoinMarketCapData();
+    private final CoinMarketCapListing listing;
+    private final ExchangeVisitor exchangeVisitor;
+    private final ConcurrentMap<String, CoinMarketCapData> byBaseAsset = new ConcurrentHashMap<>();
+
+    MarketCapJoin(CoinMarketCapListing listing, ExchangeVisitor exchangeVisitor) {
+        this.listing = listing;
+        this.exchangeVisitor = exchangeVisitor;
+    }
+
+    /**
+     * Find the coin market cap data for a base asset on the exchange.
+     *
+     * @param baseAsset the base asset, such as "BTC".
+     * @return the data, or null if the base asset is not in the listing.
+     */
+    public CoinMarketCapData find(String baseAsset) {
+        if (baseAsset == null) {
+            return null;
+        }
+        CoinMarketCapData data = byBaseAsset.get(baseAsset);
+        if (data == null) {
+            data = resolve(baseAsset);
+            byBaseAsset.putIfAbsent(baseAsset, data);
+        }
+        return data == NONE ? null : data;
+    }
+
+    private CoinMarketCapData resolve(String baseAsset) {
+        String name = exchangeVisitor.getName(baseAsset);
+        //the symbol and the name identify a coin when more than one coin has the symbol, such as "UNI"
+        return listing.findData(exchangeVisitor.getSymbol(baseAsset), name)
+                .or(() -> listing.getIndex().getCoins(name).stream().findFirst())
+                .orElse(NONE);
+    }
+}
@@ -0,0 +1,102 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap.dto;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.scanner.cryptoserver.util.dto.Coin;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable lookup index over the coins in an exchange info object.
+ * The index is built once when the exchange info is loaded, so that symbol lookups
+ * are constant time instead of a scan over every coin on the exchange.
+ */
+public class SymbolIndex {
+    private final ImmutableMap<String, Coin> bySymbol;
+    private final ImmutableListMultimap<String, Coin> byBaseAsset;
+    private final ImmutableListMultimap<String, Coin> byQuoteAsset;
+    //symbols that are trading, and are in a USA-based market
+    private final ImmutableSet<String> tradingSymbols;
+
+    private SymbolIndex(ImmutableMap<String, Coin> bySymbol, ImmutableListMultimap<String, Coin> byBaseAsset,
+                        ImmutableListMultimap<String, Coin> byQuoteAsset, ImmutableSet<String> tradingSymbols) {
+        this.bySymbol = bySymbol;
+        this.byBaseAsset = byBaseAsset;
+        this.byQuoteAsset = byQuoteAsset;
+        this.tradingSymbols = tradingSymbols;
+    }
+
+    /**
+     * Build an index for a list of coins.
+     *
+     * @param coins         the coins on the exchange.
+     * @param nonUsaMarkets the quote assets (markets) that are not USA-based, such as "EUR".
+     * @return the index.
+     */
+    public static SymbolIndex of(List<Coin> coins, Collection<String> nonUsaMarkets) {
+        ImmutableMap.Builder<String, Coin> bySymbol = ImmutableMap.builder();
+        ImmutableListMultimap.Builder<String, Coin> byBaseAsset = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, Coin> byQuoteAsset = ImmutableListMultimap.builder();
+        ImmutableSet.Builder<String> tradingSymbols = ImmutableSet.builder();
+        Set<String> seen = new HashSet<>();
+
+        if (coins != null) {
+            for (Coin coin : coins) {
+                String symbol = coin.getSymbol();
+                //the first coin for a symbol wins - this matches the previous "findFirst" lookup
+                if (symbol != null && seen.add(symbol)) {
+                    bySymbol.put(symbol, coin);
+                    if (coin.getStatus() != null && coin.isTrading() && !nonUsaMarkets.contains(coin.getQuoteAsset())) {
+                        tradingSymbols.add(symbol);
+                    }
+                }
+                if (coin.getBaseAsset() != null) {
+                    byBaseAsset.put(coin.getBaseAsset(), coin);
+                }
+                if (coin.getQuoteAsset() != null) {
+                    byQuoteAsset.put(coin.getQuoteAsset(), coin);
+                }
+            }
+        }
+        return new SymbolIndex(bySymbol.build(), byBaseAsset.build(), byQuoteAsset.build(), tradingSymbols.build());
+    }
+
+    public Optional<Coin> getCoin(String symbol) {
+        return symbol == null ? Optional.empty() : Optional.ofNullable(bySymbol.get(symbol));
+    }
+
+    public boolean containsSymbol(String symbol) {
+        return symbol != null && bySymbol.containsKey(symbol);
+    }
+
+    public List<Coin> getCoinsForBaseAsset(String baseAsset) {
+        return byBaseAsset.get(baseAsset);
+    }
+
+    public List<Coin> getCoinsForQuoteAsset(String quoteAsset) {
+        return byQuoteAsset.get(quoteAsset);
+    }
+
+    public Set<String> getBaseAssets() {
+        return byBaseAsset.keySet();
+    }
+
+    public Set<String> getQuoteAssets() {
+        return byQuoteAsset.keySet();
+    }
+
+    /**
+     * Determine if a symbol is trading in a USA-based market. This is precomputed when the index is built.
+     *
+     * @param symbol the coin, such as BTCUSDT.
+     * @return true if the coin is actively trading in a USA-based market, false otherwise.
+     */
+    public boolean isTradingInUsaMarket(String symbol) {
+        return symbol != null && tradingSymbols.contains(symbol);
+    }
+}
@@ -0,0 +1,42 @@
+package com.scanner.cryptoserver.exchange.controller;
+
+import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapRefresher;
+import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports how the coin market cap api is being used, so that the credits used can be checked against the plan's limit.
+ */
+@RestController
+//@CrossOrigin(origins = "https://develop.d2vswqrfiywrsc.amplifyapp.com")
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("api/v1/coinmarketcap")
+public class CoinMarketCapController {
+    private final CoinMarketCapService coinMarketCapService;
+    private final CoinMarketCapRefresher coinMarketCapRefresher;
+
+    public CoinMarketCapController(CoinMarketCapService coinMarketCapService, CoinMarketCapRefresher coinMarketCapRefresher) {
+        this.coinMarketCapService = coinMarketCapService;
+        this.coinMarketCapRefresher = coinMarketCapRefresher;
+    }
+
+    /**
+     * Get the coin market cap api usage since the server started. For example:
+     * {"calls": 12, "credits": 36, "badIds": [6999], "creditsToday": 8, "dailyCredits": 300}
+     *
+     * @return the number of calls, the credits used, the ids that the api rejected, and the credits used today out of the daily credits.
+     */
+    @GetMapping(value = "/usage")
+    public Map<String, Object> getUsage() {
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("calls", coinMarketCapService.getCallCount());
+        usage.put("credits", coinMarketCapService.getCreditsUsed());
+        usage.put("badIds", coinMarketCapService.getBadIds());
+        usage.put("creditsToday", coinMarketCapRefresher.getCreditsToday());
+        usage.put("dailyCredits", coinMarketCapRefresher.getDailyCredits());
+        return usage;
+    }
+}
@@ -0,0 +1,53 @@
+package com.scanner.cryptoserver.exchange.controller;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reports the connection pool of the shared http client, by host, to show how well connections to the exchanges
+ * and the coin market cap api are reused.
+ */
+@RestController
+//@CrossOrigin(origins = "https://develop.d2vswqrfiywrsc.amplifyapp.com")
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("api/v1/http")
+public class HttpPoolController {
+    private final PoolingHttpClientConnectionManager httpConnectionManager;
+
+    public HttpPoolController(PoolingHttpClientConnectionManager httpConnectionManager) {
+        this.httpConnectionManager = httpConnectionManager;
+    }
+
+    /**
+     * Get the connection pool stats, for all hosts ("total") and by host. For example:
+     * {"total": {"leased": 1, "available": 3, "pending": 0, "max": 50}, "api.binance.com": {"leased": 1, "available": 2, "pending": 0, "max": 10}}
+     *
+     * @return the stats: the connections in use (leased), open and idle (available), waited for (pending), and the limit (max).
+     */
+    @GetMapping(value = "/pools")
+    public Map<String, Map<String, Integer>> getPools() {
+        Map<String, Map<String, Integer>> pools = new LinkedHashMap<>();
+        pools.put("total", toMap(httpConnectionManager.getTotalStats()));
+        Map<String, Map<String, Integer>> hosts = new TreeMap<>();
+        for (HttpRoute route : httpConnectionManager.getRoutes()) {
+            hosts.put(route.getTargetHost().getHostName(), toMap(httpConnectionManager.getStats(route)));
+        }
+        pools.putAll(hosts);
+        return pools;
+    }
+
+    private static Map<String, Integer> toMap(PoolStats stats) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("leased", stats.getLeased());
+        map.put("available", stats.getAvailable());
+        map.put("pending", stats.getPending());
+        map.put("max", stats.getMax());
+        return map;
+    }
+}
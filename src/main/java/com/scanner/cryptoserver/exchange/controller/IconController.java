@@ -0,0 +1,91 @@
+package com.scanner.cryptoserver.exchange.controller;
+
+import com.scanner.cryptoserver.util.CacheUtil;
+import com.scanner.cryptoserver.util.IconAtlas;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the coin icons. The 24-hour data has the URL of each coin icon, which has the hash of the icon in it
+ * (see CacheUtil.getIconUrl()) - so the URL of an icon changes whenever the icon changes,
+ * and the client can cache an icon forever.
+ * All the icons are also served as an atlas of sprite sheets, so that a client can get every icon in a couple of requests.
+ */
+@RestController
+//@CrossOrigin(origins = "https://develop.d2vswqrfiywrsc.amplifyapp.com")
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("api/v1/icons")
+public class IconController {
+    //the icon names are coin names (such as "btc") or coin market cap ids (such as "1027")
+    private static final Pattern ICON_NAME = Pattern.compile("[A-Za-z0-9]+");
+    private static final long MAX_AGE_DAYS = 365;
+    //the atlas map only changes when the server is deployed with new icons
+    private static final Duration ATLAS_MAP_MAX_AGE = Duration.ofDays(1);
+    private final CacheUtil cacheUtil;
+    private final IconAtlas iconAtlas;
+
+    public IconController(CacheUtil cacheUtil, IconAtlas iconAtlas) {
+        this.cacheUtil = cacheUtil;
+        this.iconAtlas = iconAtlas;
+    }
+
+    /**
+     * Get a coin icon.
+     *
+     * @param name the coin name or coin market cap id.
+     * @param hash the hash of the icon.
+     * @return the png icon, or "404 Not Found" if there is no such icon, or if the icon has changed since the hash was made.
+     */
+    @GetMapping(value = "/{name}/{hash}.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getIcon(@PathVariable String name, @PathVariable String hash) {
+        if (!ICON_NAME.matcher(name).matches() || !hash.equals(cacheUtil.getIconHash(name, null))) {
+            return ResponseEntity.notFound().build();
+        }
+        return createImmutableResponse(cacheUtil.getIconBytes(name, null), hash);
+    }
+
+    /**
+     * Get the map of the icon atlas: the URLs of the sprite sheets, and the sheet and position of each icon
+     * by coin name or coin market cap id. For example:
+     * {"sheets": ["/api/v1/icons/atlas/(hash).png"], "icons": {"btc": {"sheet": 0, "x": 32, "y": 0, "width": 32, "height": 32}}}
+     *
+     * @param acceptEncoding the encodings the client accepts - the map is sent gzipped if the client accepts gzip.
+     * @param ifNoneMatch    the ETag of the map the client already has - if the map hasn't changed, nothing is sent.
+     * @return the map of the atlas.
+     */
+    @GetMapping(value = "/atlas", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getAtlas(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return iconAtlas.getAtlas().getMap().toResponseEntity(acceptEncoding, ifNoneMatch, ATLAS_MAP_MAX_AGE);
+    }
+
+    /**
+     * Get a sprite sheet of the icon atlas.
+     *
+     * @param hash the hash of the sheet, from the URL in the atlas map.
+     * @return the png sheet, or "404 Not Found" if there is no such sheet.
+     */
+    @GetMapping(value = "/atlas/{hash}.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getAtlasSheet(@PathVariable String hash) {
+        return iconAtlas.getAtlas().getSheet(hash)
+                .map(sheet -> createImmutableResponse(sheet.getPng(), hash))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static ResponseEntity<byte[]> createImmutableResponse(byte[] png, String hash) {
+        //"immutable" tells the browser not to check the image again, even on a reload - the URL changes if the image does
+        String cacheControl = CacheControl.maxAge(MAX_AGE_DAYS, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .eTag("\"" + hash + "\"")
+                .body(png);
+    }
+}
@@ -12,6 +12,7 @@ import com.scanner.cryptoserver.util.SandboxUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -85,6 +86,17 @@ public abstract class AbstractSandboxExchangeService implements ExchangeService
         return getDataList(getDataName("24HourTicker"), CoinDataFor24Hr.class);
     }
 
+    @Override
+    public TickerStream get24HrAllCoinTickerStream() {
+        //the Sandbox data never changes, so there is nothing to stream
+        return null;
+    }
+
+    @Override
+    public Duration get24HrAllCoinTickerMaxAge() {
+        return null;
+    }
+
     @Override
     public List<CoinDataFor24Hr> get24HrAllCoinTicker(int page, int pageSize) {
         List<CoinDataFor24Hr> coins = get24HrAllCoinTicker();
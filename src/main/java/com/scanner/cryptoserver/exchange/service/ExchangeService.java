@@ -1,9 +1,12 @@
 package com.scanner.cryptoserver.exchange.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr;
 import com.scanner.cryptoserver.exchange.binance.dto.CoinTicker;
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo;
+import com.scanner.cryptoserver.util.SerializedResponse;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -34,10 +37,53 @@ public interface ExchangeService {
 
     List<CoinDataFor24Hr> get24HrAllCoinTicker(int page, int pageSize);
 
+    /**
+     * Get the stream of changes to the 24-hour data for all the coins on the exchange.
+     *
+     * @return the stream, or null if the exchange doesn't have one.
+     */
+    TickerStream get24HrAllCoinTickerStream();
+
+    /**
+     * Get how long a client can cache the 24-hour data for all the coins on the exchange: until the data is next refreshed.
+     *
+     * @return the time until the data is refreshed, or null if the exchange doesn't refresh the data.
+     */
+    Duration get24HrAllCoinTickerMaxAge();
+
     List<CoinTicker> getTickerData(String symbol, String interval, String daysOrMonths);
 
+    /**
+     * Get the ticker data serialized for a response. An exchange that caches its ticker data can reuse the response
+     * until the data is reloaded, instead of serializing it for every request.
+     *
+     * @param symbol       the coin, such as "LTCUSDT".
+     * @param interval     the interval, such as "12h".
+     * @param daysOrMonths the days or months, such as "7d" or "3M".
+     * @param objectMapper the application's object mapper, which serializes the data.
+     * @return the serialized ticker data.
+     */
+    default SerializedResponse getTickerDataResponse(String symbol, String interval, String daysOrMonths, ObjectMapper objectMapper) {
+        return SerializedResponse.create(objectMapper, getTickerData(symbol, interval, daysOrMonths));
+    }
+
     void setRsiForTickers(List<CoinTicker> tickers, int periodLength);
 
+    /**
+     * Get the ticker data with the RSI of each ticker.
+     *
+     * @param symbol       the coin, such as "LTCUSDT".
+     * @param interval     the interval, such as "12h".
+     * @param daysOrMonths the days or months, such as "7d" or "3M".
+     * @param periodLength the number of tickers in the RSI period.
+     * @return the ticker data, with the RSI.
+     */
+    default List<CoinTicker> getRsiTickerData(String symbol, String interval, String daysOrMonths, int periodLength) {
+        List<CoinTicker> tickers = getTickerData(symbol, interval, daysOrMonths);
+        setRsiForTickers(tickers, periodLength);
+        return tickers;
+    }
+
     List<CoinTicker> getRsiTickerData(List<String> symbols);
 
     /**
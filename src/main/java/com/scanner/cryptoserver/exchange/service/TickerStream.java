@@ -0,0 +1,221 @@
+package com.scanner.cryptoserver.exchange.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr;
+import com.scanner.cryptoserver.util.SnapshotRefresher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * A Server-Sent Events stream of the 24-hour data for all the coins on an exchange.
+ * When a client connects, it gets the whole snapshot. After that, each refresh of the snapshot sends only the
+ * coins whose price, volume or price change percent changed, and the coins that are no longer on the exchange.
+ * Each snapshot and each change is serialized once, and the same json is sent to every client.
+ * The json is written to the clients on a sender thread of the stream's own, in the order it was queued -
+ * so a slow client never holds up the refreshes of the snapshot.
+ */
+public class TickerStream {
+    private static final Logger Log = LoggerFactory.getLogger(TickerStream.class);
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String DELTA_EVENT = "delta";
+    //the client reconnects when the stream times out, and gets a new snapshot
+    private static final long TIMEOUT_MILLIS = Duration.ofMinutes(30).toMillis();
+
+    private final String name;
+    private final SnapshotRefresher<List<CoinDataFor24Hr>> refresher;
+    private final ObjectMapper objectMapper;
+    //the icons don't change, so they are only sent with the snapshot
+    private final ObjectMapper deltaMapper;
+    private final ExecutorService sender;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final Consumer<List<CoinDataFor24Hr>> listener = this::publish;
+    //the last snapshot sent to the clients, indexed by symbol
+    private Map<String, CoinDataFor24Hr> lastRows;
+    private List<CoinDataFor24Hr> lastSnapshot;
+    //serialized when the first client asks for it after a refresh
+    private String snapshotJson;
+
+    @JsonIgnoreProperties({"icon", "iconUrl"})
+    private abstract static class WithoutIcon {
+    }
+
+    /**
+     * @param name         the name of the stream, such as "binanceusa-All24HourTicker" - used for the sender thread and logging.
+     * @param refresher    keeps the 24-hour data fresh - the stream listens to it while there are clients.
+     * @param objectMapper the application's object mapper, used to serialize the snapshots and the changes.
+     */
+    public TickerStream(String name, SnapshotRefresher<List<CoinDataFor24Hr>> refresher, ObjectMapper objectMapper) {
+        this(name, refresher, objectMapper, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stream-" + name);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    TickerStream(String name, SnapshotRefresher<List<CoinDataFor24Hr>> refresher, ObjectMapper objectMapper, ExecutorService sender) {
+        this.name = name;
+        this.refresher = refresher;
+        this.objectMapper = objectMapper;
+        this.deltaMapper = objectMapper.copy().addMixIn(CoinDataFor24Hr.class, WithoutIcon.class);
+        this.sender = sender;
+    }
+
+    /**
+     * Connect a client to the stream. The client is sent the current snapshot right away.
+     *
+     * @return the emitter for the client's connection.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = createEmitter();
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(() -> unsubscribe(emitter));
+        emitter.onError(e -> unsubscribe(emitter));
+        //this waits for the exchange if there is no snapshot yet - so don't hold the lock for it
+        List<CoinDataFor24Hr> snapshot = refresher.get();
+        synchronized (this) {
+            if (emitters.isEmpty()) {
+                //the stream didn't hear about the refreshes while there were no clients, so start over
+                reset(snapshot);
+                refresher.addListener(listener);
+            }
+            emitters.add(emitter);
+            if (lastSnapshot != null) {
+                //queued behind any changes already on their way to the other clients, and ahead of the next ones
+                sendLater(Collections.singletonList(emitter), SNAPSHOT_EVENT, getSnapshotJson());
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Send the changes in a new snapshot to all the clients.
+     *
+     * @param snapshot the new 24-hour data for all the coins.
+     */
+    synchronized void publish(List<CoinDataFor24Hr> snapshot) {
+        if (emitters.isEmpty()) {
+            return;
+        }
+        if (lastSnapshot == null) {
+            //the clients haven't been sent a snapshot yet
+            reset(snapshot);
+            sendLater(new ArrayList<>(emitters), SNAPSHOT_EVENT, getSnapshotJson());
+            return;
+        }
+        Map<String, CoinDataFor24Hr> rows = index(snapshot);
+        List<CoinDataFor24Hr> changed = new ArrayList<>();
+        for (CoinDataFor24Hr row : snapshot) {
+            CoinDataFor24Hr last = lastRows.get(row.getSymbol());
+            if (last == null || hasChanged(last, row)) {
+                changed.add(row);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String symbol : lastRows.keySet()) {
+            if (!rows.containsKey(symbol)) {
+                removed.add(symbol);
+            }
+        }
+        lastSnapshot = snapshot;
+        lastRows = rows;
+        snapshotJson = null;
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("changed", changed);
+        delta.put("removed", removed);
+        sendLater(new ArrayList<>(emitters), DELTA_EVENT, serialize(deltaMapper, delta));
+    }
+
+    /**
+     * Close the connections of all the clients.
+     */
+    public synchronized void shutdown() {
+        emitters.forEach(SseEmitter::complete);
+        emitters.clear();
+        refresher.removeListener(listener);
+        sender.shutdownNow();
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(TIMEOUT_MILLIS);
+    }
+
+    private synchronized void unsubscribe(SseEmitter emitter) {
+        if (emitters.remove(emitter) && emitters.isEmpty()) {
+            refresher.removeListener(listener);
+            reset(null);
+        }
+    }
+
+    private void reset(List<CoinDataFor24Hr> snapshot) {
+        lastSnapshot = snapshot;
+        lastRows = snapshot == null ? null : index(snapshot);
+        snapshotJson = null;
+    }
+
+    private String getSnapshotJson() {
+        if (snapshotJson == null) {
+            snapshotJson = serialize(objectMapper, lastSnapshot);
+        }
+        return snapshotJson;
+    }
+
+    /**
+     * Queue the json to be sent to the clients on the sender thread.
+     * The clients are the ones connected now - a client that connects later gets the snapshot instead.
+     */
+    private void sendLater(List<SseEmitter> clients, String event, String json) {
+        try {
+            sender.execute(() -> clients.forEach(emitter -> send(emitter, event, json)));
+        } catch (RejectedExecutionException e) {
+            //the stream has been shut down
+            Log.debug("Unable to send {} to the clients of {}: the stream is shut down", event, name);
+        }
+    }
+
+    private void send(SseEmitter emitter, String event, String json) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(json, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            //the client has gone away
+            Log.debug("Unable to send {} to a client of {}: {}", event, name, e.getMessage());
+            unsubscribe(emitter);
+        }
+    }
+
+    private String serialize(ObjectMapper mapper, Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Unable to serialize " + name, e);
+        }
+    }
+
+    private static Map<String, CoinDataFor24Hr> index(List<CoinDataFor24Hr> snapshot) {
+        Map<String, CoinDataFor24Hr> rows = new HashMap<>(snapshot.size() * 2);
+        snapshot.forEach(row -> rows.put(row.getSymbol(), row));
+        return rows;
+    }
+
+    private static boolean hasChanged(CoinDataFor24Hr last, CoinDataFor24Hr row) {
+        return !Objects.equals(last.getLastPrice(), row.getLastPrice())
+                || !Objects.equals(last.getVolume(), row.getVolume())
+                || !Objects.equals(last.getQuoteVolume(), row.getQuoteVolume())
+                || !Objects.equals(last.getPriceChangePercent(), row.getPriceChangePercent());
+    }
+}
@@ -0,0 +1,241 @@
+package com.scanner.cryptoserver.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the slow-to-load caches (the exchange info, the coin market cap data and the 24-hour data) to a local file,
+ * on shutdown and every few minutes, and loads them back on startup.
+ * The values keep the time they were loaded, so after a restart they are served right away and reloaded in the background,
+ * instead of every exchange being called before the server can answer.
+ */
+@Service
+public class CacheSnapshotStore {
+    private static final Logger Log = LoggerFactory.getLogger(CacheSnapshotStore.class);
+    private static final List<String> SNAPSHOT_CACHES = Arrays.asList("ExchangeInfo", "CoinMarketCap", "All24HourTicker");
+    private static final long SAVE_INTERVAL_MINUTES = 5;
+    //values older than this are not worth loading - they are reloaded anyway
+    //a value in a cache that expires its values is loaded for as long as the cache would have kept it
+    private static final long MAX_AGE_MILLIS = Duration.ofDays(1).toMillis();
+    //only classes from this application are loaded from the file
+    private static final String TYPE_PREFIX = "com.scanner.cryptoserver.";
+
+    private final CacheManager cacheManager;
+    private final Path file;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final List<SnapshotRefresher<?>> refreshers = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * A value in the file, with its type so that it can be read back.
+     */
+    static class Record {
+        public String cache;
+        public String key;
+        public long loadedAt;
+        public String type;
+        //for a list, the type of the elements
+        public String elementType;
+        public JsonNode value;
+    }
+
+    static class Snapshot {
+        public long savedAt;
+        public List<Record> caches = new ArrayList<>();
+        public List<Record> refreshers = new ArrayList<>();
+    }
+
+    public CacheSnapshotStore(CacheManager cacheManager, @Value("${caching.snapshot-file:cache-snapshot.json}") String file) {
+        this.cacheManager = cacheManager;
+        this.file = Paths.get(file);
+    }
+
+    /**
+     * Add a snapshot refresher (such as the one for the 24-hour data of an exchange) to be saved and loaded with the caches.
+     * This must be called before the snapshot is loaded.
+     *
+     * @param refresher the snapshot refresher.
+     */
+    public synchronized void register(SnapshotRefresher<?> refresher) {
+        refreshers.add(refresher);
+    }
+
+    /**
+     * Load the caches from the file, if there is one, and start saving them every few minutes.
+     */
+    public synchronized void start() {
+        load();
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::save, SAVE_INTERVAL_MINUTES, SAVE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            //only save if the caches were loaded - otherwise (such as in sandbox mode) a good file would be overwritten
+            scheduler.shutdownNow();
+            scheduler = null;
+            save();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = objectMapper.readValue(file.toFile(), Snapshot.class);
+        } catch (IOException e) {
+            Log.error("Unable to read the cache snapshot {}: {}", file, e.getMessage());
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long oldest = now - MAX_AGE_MILLIS;
+        int count = 0;
+        for (Record record : snapshot.caches) {
+            Object value = readValue(record);
+            if (value == null) {
+                continue;
+            }
+            try {
+                Cache cache = cacheManager.getCache(record.cache);
+                if (cache instanceof RefreshAheadCache) {
+                    RefreshAheadCache refreshAheadCache = (RefreshAheadCache) cache;
+                    if (record.loadedAt < oldest && !refreshAheadCache.isExpiredByLoadTime()) {
+                        continue;
+                    }
+                    if (refreshAheadCache.restore(record.key, value, record.loadedAt)) {
+                        count++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                //the cache may no longer exist
+                Log.debug("Unable to load {} {} from the cache snapshot: {}", record.cache, record.key, e.getMessage());
+            }
+        }
+        for (Record record : snapshot.refreshers) {
+            Object value = readValue(record);
+            if (record.loadedAt < oldest || value == null) {
+                continue;
+            }
+            for (SnapshotRefresher<?> refresher : refreshers) {
+                if (refresher.getName().equals(record.key)) {
+                    ((SnapshotRefresher<Object>) refresher).seed(value, record.loadedAt);
+                    count++;
+                }
+            }
+        }
+        Log.info("Loaded {} values from the cache snapshot {}", count, file);
+    }
+
+    synchronized void save() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.savedAt = System.currentTimeMillis();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (!isSnapshotCache(cacheName) || !(cache instanceof RefreshAheadCache)) {
+                continue;
+            }
+            ((RefreshAheadCache) cache).forEachEntry((key, value, loadedAt) ->
+                    createRecord(cacheName, key.toString(), value, loadedAt).ifPresent(snapshot.caches::add));
+        }
+        for (SnapshotRefresher<?> refresher : refreshers) {
+            createRecord(null, refresher.getName(), refresher.peek(), refresher.getLoadedAt()).ifPresent(snapshot.refreshers::add);
+        }
+        try {
+            //write to a temporary file first, so that a crash while writing doesn't leave a broken snapshot
+            Path temp = Paths.get(file.toString() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), snapshot);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.error("Unable to write the cache snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Check whether a cache is saved in the cache snapshot.
+     *
+     * @param cacheName the name of the cache, such as "binance-All24HourTicker".
+     * @return true if the cache is saved.
+     */
+    public static boolean isSnapshotCache(String cacheName) {
+        return SNAPSHOT_CACHES.stream().anyMatch(cacheName::endsWith);
+    }
+
+    private Optional<Record> createRecord(String cacheName, String key, Object value, long loadedAt) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        Record record = new Record();
+        record.cache = cacheName;
+        record.key = key;
+        record.loadedAt = loadedAt;
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            record.type = List.class.getName();
+            record.elementType = list.isEmpty() ? null : list.get(0).getClass().getName();
+        } else {
+            record.type = value.getClass().getName();
+        }
+        try {
+            record.value = objectMapper.valueToTree(value);
+        } catch (IllegalArgumentException e) {
+            Log.debug("Unable to save {} {} in the cache snapshot: {}", cacheName, key, e.getMessage());
+            return Optional.empty();
+        }
+        return Optional.of(record);
+    }
+
+    private Object readValue(Record record) {
+        try {
+            JavaType type;
+            if (List.class.getName().equals(record.type)) {
+                Class<?> elementType = record.elementType == null ? Object.class : getSnapshotClass(record.elementType);
+                type = objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, elementType);
+            } else {
+                type = objectMapper.getTypeFactory().constructType(getSnapshotClass(record.type));
+            }
+            return objectMapper.readValue(objectMapper.treeAsTokens(record.value), type);
+        } catch (IOException | ClassNotFoundException | IllegalArgumentException e) {
+            Log.debug("Unable to load {} {} from the cache snapshot: {}", record.cache, record.key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Class<?> getSnapshotClass(String className) throws ClassNotFoundException {
+        if (!className.startsWith(TYPE_PREFIX)) {
+            throw new IllegalArgumentException("Unexpected type in the cache snapshot: " + className);
+        }
+        return Class.forName(className);
+    }
+}
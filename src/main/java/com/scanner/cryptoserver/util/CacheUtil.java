@@ -22,9 +22,37 @@ public interface CacheUtil {
 
     byte[] getIconBytes(String coin, Integer id);
 
+    /**
+     * Get the hash of the contents of a coin icon, which changes only if the icon changes.
+     *
+     * @param coin the coin name, such as "BTC" - can be null if the id is given.
+     * @param id   the coin id from the coin market cap map - can be null if the coin name is given.
+     * @return the hash of the icon, or null if there is no icon for the coin.
+     */
+    String getIconHash(String coin, Integer id);
+
+    /**
+     * Get the URL of a coin icon. The URL has the hash of the icon in it, so a client can cache the icon forever.
+     *
+     * @param coin the coin name, such as "BTC" - can be null if the id is given.
+     * @param id   the coin id from the coin market cap map - can be null if the coin name is given.
+     * @return the URL of the icon, or null if there is no icon for the coin.
+     */
+    String getIconUrl(String coin, Integer id);
+
     void addExchangeInfoSupplier(String exchangeName, Supplier<ExchangeInfo> supplier);
 
     List<String> getExchangeNames();
 
     void putInCache(String cacheName, String valueName, Object cacheObject);
+
+    /**
+     * Get when a value in the cache was loaded, such as to find out whether a value loaded from the cache snapshot is due to be reloaded.
+     *
+     * @param cacheName the name of the cache.
+     * @param valueName the name of the value.
+     * @return when the value was loaded, in epoch milliseconds, or 0 if the value is not in the cache
+     * (or the cache doesn't keep the time each value was loaded).
+     */
+    long getLoadedAt(String cacheName, String valueName);
 }
@@ -1,25 +1,56 @@
 package com.scanner.cryptoserver.util;
 
 import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 import java.util.function.Supplier;
 
 @Service(value = "cacheUtil")
 public class CacheUtilImpl implements CacheUtil {
+    private static final Logger Log = LoggerFactory.getLogger(CacheUtilImpl.class);
     private final List<String> exchangeNames = new ArrayList<>();
     private final Map<String, Supplier<ExchangeInfo>> exchangeInfoSuppliersMap = new HashMap<>();
     private final CacheManager cacheManager;
     private static final String ICON_CACHE = "IconCache";
+    //a caller waits this long for another caller that is loading the same object
+    private static final long LOAD_TIMEOUT_MILLIS = 60_000;
+    //the loads that are in progress, by cache name and value name
+    private final ConcurrentMap<String, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+    private final long loadTimeoutMillis;
+    //the hash of each icon, by coin name or id
+    private final ConcurrentMap<String, String> iconHashes = new ConcurrentHashMap<>();
+    //reloads the values that are soft-expired in a refresh-ahead cache
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
 
+    @Autowired
     public CacheUtilImpl(CacheManager cacheManager) {
+        this(cacheManager, LOAD_TIMEOUT_MILLIS);
+    }
+
+    CacheUtilImpl(CacheManager cacheManager, long loadTimeoutMillis) {
         this.cacheManager = cacheManager;
+        this.loadTimeoutMillis = loadTimeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
     }
 
     /**
@@ -32,8 +63,13 @@ public class CacheUtilImpl implements CacheUtil {
      *                  If null, then it is assumed that the object is always in the cache;
      *                  If the supplier is null and the object is not in the cache, then the object returned will be null.
      *                  The client objects using this need to prevent this case.
+     *                  Only one caller at a time calls the supplier for a value - other callers that want the same value
+     *                  wait for it, so that an expired value doesn't cause a call to the exchange for every request.
+     *                  If the cache is a refresh-ahead cache and the value is soft-expired, the value is returned
+     *                  and the supplier is called in the background.
      * @param <T>       The type of the element in the cache.
      * @return The element in the cache.
+     * @throws RuntimeException if the supplier fails, or if waiting for another caller's supplier takes too long.
      */
     @Override
     public <T> T retrieveFromCache(String cacheName, String valueName, Supplier<T> supplier) {
@@ -42,15 +78,86 @@ public class CacheUtilImpl implements CacheUtil {
         if (cache != null) {
             Cache.ValueWrapper value = cache.get(valueName);
             if (value == null && supplier != null) {
-                cacheObj = supplier.get();
-                cache.put(valueName, cacheObj);
+                cacheObj = load(cache, cacheName, valueName, supplier);
             } else if (value != null) {
                 cacheObj = (T) value.get();
+                if (supplier != null && cache instanceof RefreshAheadCache && ((RefreshAheadCache) cache).startRefresh(valueName)) {
+                    refresh(cache, cacheName, valueName, supplier);
+                }
             }
         }
         return cacheObj;
     }
 
+    private <T> T load(Cache cache, String cacheName, String valueName, Supplier<T> supplier) {
+        String key = cacheName + "/" + valueName;
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inProgress = loads.putIfAbsent(key, load);
+        if (inProgress != null) {
+            return waitForLoad(inProgress, key);
+        }
+        try {
+            //another caller may have put the value in the cache since we looked
+            Cache.ValueWrapper value = cache.get(valueName);
+            T cacheObj;
+            if (value == null) {
+                cacheObj = supplier.get();
+                cache.put(valueName, cacheObj);
+            } else {
+                cacheObj = (T) value.get();
+            }
+            load.complete(cacheObj);
+            return cacheObj;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    //Reload a value in the background - unless it is already being loaded.
+    private <T> void refresh(Cache cache, String cacheName, String valueName, Supplier<T> supplier) {
+        String key = cacheName + "/" + valueName;
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        if (loads.putIfAbsent(key, load) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    T cacheObj = supplier.get();
+                    cache.put(valueName, cacheObj);
+                    load.complete(cacheObj);
+                } catch (RuntimeException e) {
+                    //the stale value stays in the cache until it expires
+                    Log.error("Unable to refresh {}: {}", key, e.getMessage());
+                    load.completeExceptionally(e);
+                } finally {
+                    loads.remove(key, load);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loads.remove(key, load);
+        }
+    }
+
+    private <T> T waitForLoad(CompletableFuture<Object> load, String key) {
+        try {
+            return (T) load.get(loadTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Unable to load " + key, e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out waiting for " + key + " to load");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + key + " to load");
+        }
+    }
+
     /**
      * Convenience method to get exchange info out of the cache manager.
      *
@@ -98,26 +205,46 @@ public class CacheUtilImpl implements CacheUtil {
 
     @Override
     public byte[] getIconBytes(String coin, Integer id) {
+        //the icons are indexed by coin name and by coin market cap id, so this one lookup finds the icon either way
+        String name = IconExtractor.getIconName(coin, id);
+        if (name == null) {
+            //here, the coin icon isn't in the images folder
+            return new byte[0];
+        }
         //Attempt to get the icon out of the cache if it is in there.
         //If not in the cache, then call the icon extract service and add the icon bytes to the cache.
         //The data in the cache will expire according to the setup in the CachingConfig configuration.
         Supplier<byte[]> iconExtractor = () -> {
-            byte[] bytes = null;
-            if (coin != null) {
-                bytes = IconExtractor.getIconBytes(coin);
-            }
-            if (bytes == null && id != null) {
-                bytes = IconExtractor.getIconBytes(id);
-            }
-            if (bytes == null) {
-                //here, the coin icon wasn't in the images folder
-                // add a non-null empty array to the cache so we don't keep trying to extract it
-                bytes = new byte[0];
-            }
-            return bytes;
+            byte[] bytes = IconExtractor.getIconBytes(name);
+            //add a non-null empty array to the cache if the icon can't be read, so we don't keep trying to extract it
+            return bytes == null ? new byte[0] : bytes;
         };
-        byte[] coins = retrieveFromCache(ICON_CACHE, coin == null ? id.toString() : coin, iconExtractor);
-        return coins;
+        return retrieveFromCache(ICON_CACHE, name, iconExtractor);
+    }
+
+    @Override
+    public String getIconHash(String coin, Integer id) {
+        String name = IconExtractor.getIconName(coin, id);
+        if (name == null) {
+            return null;
+        }
+        byte[] bytes = getIconBytes(name, null);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        //the icons are resources, so they don't change while the server runs - each is hashed only once
+        return iconHashes.computeIfAbsent(name, key -> DigestUtils.md5DigestAsHex(bytes));
+    }
+
+    @Override
+    public String getIconUrl(String coin, Integer id) {
+        String name = IconExtractor.getIconName(coin, id);
+        String hash = name == null ? null : getIconHash(name, null);
+        if (hash == null) {
+            return null;
+        }
+        //the icon's own name (such as "1027" for a coin that only has an icon by its id) - the same name as in the atlas
+        return IconExtractor.ICON_URL_PATH + name + "/" + hash + ".png";
     }
 
     @Override
@@ -138,4 +265,10 @@ public class CacheUtilImpl implements CacheUtil {
             cache.put(valueName, cacheObject);
         }
     }
+
+    @Override
+    public long getLoadedAt(String cacheName, String valueName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        return cache instanceof RefreshAheadCache ? ((RefreshAheadCache) cache).getLoadedAt(valueName) : 0;
+    }
 }
@@ -0,0 +1,32 @@
+package com.scanner.cryptoserver.util;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Weighs cache values by how much data they hold, for caches that have a maximum weight instead of a maximum size:
+ * candles weigh one for each candle, lists one for each element, and icons one for each byte.
+ * Everything else weighs one.
+ */
+public class CacheWeigher implements Weigher<Object, Object> {
+
+    @Override
+    public int weigh(Object key, Object storeValue) {
+        Object value = RefreshAheadCache.getValue(storeValue);
+        int weight = 1;
+        if (value instanceof CandleSeries) {
+            weight = ((CandleSeries) value).size();
+        } else if (value instanceof Collection) {
+            weight = ((Collection<?>) value).size();
+        } else if (value instanceof Map) {
+            weight = ((Map<?, ?>) value).size();
+        } else if (value instanceof byte[]) {
+            weight = ((byte[]) value).length;
+        }
+        //an empty value still takes up an entry
+        return Math.max(weight, 1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.scanner.cryptoserver.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.*;
+
+/**
+ * Packs all the coin icons into sprite sheets, so that a client can get every icon in one or two requests
+ * instead of one request for each coin.
+ * The icons are placed in a grid on each sheet. The map of the atlas gives the sheet and the position of each icon,
+ * by coin name (such as "btc") or coin market cap id (such as "1027") - the same names as the icon files.
+ * The atlas is built once, the first time it is needed, since the icons don't change while the server runs.
+ */
+@Service
+public class IconAtlas {
+    private static final Logger Log = LoggerFactory.getLogger(IconAtlas.class);
+    //browsers and GPUs handle images up to this size (in pixels) on a side well
+    private static final int MAX_SHEET_SIZE = 2048;
+    private final ObjectMapper objectMapper;
+    private volatile Atlas atlas;
+
+    public IconAtlas(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * A sprite sheet: a png image with a grid of icons.
+     */
+    public static class Sheet {
+        private final byte[] png;
+        private final String hash;
+
+        private Sheet(byte[] png) {
+            this.png = png;
+            this.hash = DigestUtils.md5DigestAsHex(png);
+        }
+
+        public byte[] getPng() {
+            return png;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getUrl() {
+            return IconExtractor.ICON_URL_PATH + "atlas/" + hash + ".png";
+        }
+    }
+
+    /**
+     * Where an icon is in the atlas.
+     */
+    public static class Position {
+        public int sheet;
+        public int x;
+        public int y;
+        public int width;
+        public int height;
+    }
+
+    /**
+     * The sheets and the map of the atlas. The map is serialized once, since it is sent to every client.
+     */
+    public static class Atlas {
+        private final List<Sheet> sheets;
+        private final SerializedResponse map;
+
+        private Atlas(List<Sheet> sheets, Map<String, Position> icons, ObjectMapper objectMapper) {
+            this.sheets = sheets;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sheets", sheets.stream().map(Sheet::getUrl).toArray());
+            map.put("icons", icons);
+            this.map = SerializedResponse.create(objectMapper, map);
+        }
+
+        public Optional<Sheet> getSheet(String hash) {
+            return sheets.stream().filter(sheet -> sheet.getHash().equals(hash)).findFirst();
+        }
+
+        public List<Sheet> getSheets() {
+            return sheets;
+        }
+
+        public SerializedResponse getMap() {
+            return map;
+        }
+    }
+
+    /**
+     * Get the atlas, building it if it hasn't been built yet.
+     *
+     * @return the atlas.
+     */
+    public Atlas getAtlas() {
+        Atlas current = atlas;
+        if (current == null) {
+            synchronized (this) {
+                current = atlas;
+                if (current == null) {
+                    current = build(IconExtractor.getIconNames(), objectMapper);
+                    atlas = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    static Atlas build(Collection<String> names, ObjectMapper objectMapper) {
+        long start = System.currentTimeMillis();
+        Map<String, BufferedImage> images = new TreeMap<>();
+        int cellWidth = 1;
+        int cellHeight = 1;
+        for (String name : names) {
+            BufferedImage image = readImage(name);
+            if (image != null) {
+                images.put(name, image);
+                cellWidth = Math.max(cellWidth, image.getWidth());
+                cellHeight = Math.max(cellHeight, image.getHeight());
+            }
+        }
+        //a square grid, as long as it fits on a sheet - otherwise, the icons are split over more than one sheet
+        int columns = Math.max(Math.min((int) Math.ceil(Math.sqrt(images.size())), MAX_SHEET_SIZE / cellWidth), 1);
+        int rowsPerSheet = Math.max(MAX_SHEET_SIZE / cellHeight, 1);
+        int iconsPerSheet = columns * rowsPerSheet;
+
+        List<Sheet> sheets = new ArrayList<>();
+        Map<String, Position> positions = new TreeMap<>();
+        List<Map.Entry<String, BufferedImage>> entries = new ArrayList<>(images.entrySet());
+        for (int first = 0; first < entries.size(); first += iconsPerSheet) {
+            int count = Math.min(iconsPerSheet, entries.size() - first);
+            int rows = (count + columns - 1) / columns;
+            BufferedImage sheetImage = new BufferedImage(columns * cellWidth, rows * cellHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = sheetImage.createGraphics();
+            for (int index = 0; index < count; index++) {
+                Map.Entry<String, BufferedImage> entry = entries.get(first + index);
+                Position position = new Position();
+                position.sheet = sheets.size();
+                position.x = (index % columns) * cellWidth;
+                position.y = (index / columns) * cellHeight;
+                position.width = entry.getValue().getWidth();
+                position.height = entry.getValue().getHeight();
+                graphics.drawImage(entry.getValue(), position.x, position.y, null);
+                positions.put(entry.getKey(), position);
+            }
+            graphics.dispose();
+            sheets.add(new Sheet(writeImage(sheetImage)));
+        }
+        Log.info("Built the icon atlas: {} icons on {} sheets in {} ms", positions.size(), sheets.size(), System.currentTimeMillis() - start);
+        return new Atlas(sheets, positions, objectMapper);
+    }
+
+    private static BufferedImage readImage(String name) {
+        byte[] bytes = IconExtractor.getIconBytes(name);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            Log.debug("Unable to read icon {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] writeImage(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -8,9 +8,63 @@ import org.springframework.core.io.support.ResourcePatternResolver;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class IconExtractor {
     private static final Logger Log = LoggerFactory.getLogger(IconExtractor.class);
+    //the icons are served from here, by name and hash: for example, "/api/v1/icons/btc/<hash>.png"
+    public static final String ICON_URL_PATH = "/api/v1/icons/";
+    //the names of the icons in the resources - found once, the first time they are needed
+    private static volatile Set<String> iconNames;
+
+    /**
+     * Get the names of all the icons in the resources: the coin names (such as "btc") and coin market cap ids (such as "1027").
+     *
+     * @return the icon names, in lower case - empty if the resources couldn't be read.
+     */
+    public static Set<String> getIconNames() {
+        Set<String> names = iconNames;
+        if (names == null) {
+            names = new TreeSet<>();
+            ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(IconExtractor.class.getClassLoader());
+            try {
+                for (Resource resource : resolver.getResources("classpath*:images/*.png")) {
+                    String fileName = resource.getFilename();
+                    if (fileName != null) {
+                        names.add(fileName.substring(0, fileName.length() - ".png".length()).toLowerCase());
+                    }
+                }
+            } catch (IOException e) {
+                Log.error("Unable to find the icons: {}", e.getMessage());
+            }
+            names = Collections.unmodifiableSet(names);
+            iconNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * Find the icon of a coin in the index of the icons: by the coin name, or by the coin market cap id if there is
+     * no icon with the coin name. This is also the name of the icon in its URL and in the icon atlas.
+     *
+     * @param coin the coin name, such as "BTC" - can be null if the id is given.
+     * @param id   the coin id from the coin market cap map - can be null if the coin name is given.
+     * @return the icon name, in lower case - or null if there is no icon for the coin.
+     */
+    public static String getIconName(String coin, Integer id) {
+        Set<String> names = getIconNames();
+        String name = coin == null ? null : coin.toLowerCase();
+        if (name != null && (names.isEmpty() || names.contains(name))) {
+            return name;
+        }
+        String idName = id == null ? null : id.toString();
+        if (idName != null && (names.isEmpty() || names.contains(idName))) {
+            return idName;
+        }
+        return null;
+    }
 
     /**
      * Extract a coin icon from the resources.
@@ -24,6 +78,11 @@ public class IconExtractor {
         Resource resource;
         byte[] bytes = null;
 
+        Set<String> names = getIconNames();
+        if (!names.isEmpty() && !names.contains(coin.toLowerCase())) {
+            //there is no icon for the coin - don't look for it
+            return null;
+        }
         //try to get the icon from the resources - known icons are stored there
         resource = resolver.getResource("classpath:images/" + coin.toLowerCase() + ".png");
         try (InputStream stream = resource.getInputStream()) {
@@ -0,0 +1,173 @@
+package com.scanner.cryptoserver.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache that serves a value while it is being reloaded.
+ * Each value is soft-expired when it is older than the refresh time: it is still returned, but CacheUtil reloads it
+ * in the background. The Caffeine cache that backs this cache hard-expires the value (with ExpireAfterLoad) -
+ * after that, the next caller waits for the value to be loaded.
+ * The cache keeps the time each value was loaded, so that the values can be saved in the cache snapshot -
+ * a cache that is only saved, and not refreshed in the background, has no refresh time.
+ */
+public class RefreshAheadCache extends CaffeineCache {
+    private final long refreshAfterMillis;
+
+    private static class Entry {
+        private final Object value;
+        private final long loadedAt;
+        //when a reload was last started - a failed reload is not tried again until the refresh time has passed
+        private long refreshStartedAt;
+
+        private Entry(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Expires each value a fixed time after it was loaded. This is used instead of expireAfterWrite:
+     * a value restored from the cache snapshot is only kept for the rest of its time, not for the whole time again.
+     */
+    public static class ExpireAfterLoad implements Expiry<Object, Object> {
+        private final long expireAfterNanos;
+
+        public ExpireAfterLoad(Duration expireAfter) {
+            this.expireAfterNanos = expireAfter.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            if (!(value instanceof Entry)) {
+                return expireAfterNanos;
+            }
+            long age = Math.max(System.currentTimeMillis() - ((Entry) value).loadedAt, 0);
+            return Math.max(expireAfterNanos - TimeUnit.MILLISECONDS.toNanos(age), 0);
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            //a new value was loaded (or restored)
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * @param name         the name of the cache, such as "CoinCache".
+     * @param cache        the Caffeine cache that holds the values - this decides when a value is hard-expired.
+     * @param refreshAfter how old a value is before it is reloaded in the background - null if values are never reloaded in the background.
+     */
+    public RefreshAheadCache(String name, Cache<Object, Object> cache, Duration refreshAfter) {
+        super(name, cache, false);
+        this.refreshAfterMillis = refreshAfter == null ? Long.MAX_VALUE : refreshAfter.toMillis();
+    }
+
+    /**
+     * Check whether a value should be reloaded, and if so, mark it as being reloaded.
+     *
+     * @param key the key of the value.
+     * @return true if the caller should reload the value.
+     */
+    boolean startRefresh(Object key) {
+        //this is a peek - it doesn't count as a cache hit
+        Object storeValue = getNativeCache().asMap().get(key);
+        if (!(storeValue instanceof Entry)) {
+            return false;
+        }
+        Entry entry = (Entry) storeValue;
+        long now = System.currentTimeMillis();
+        synchronized (entry) {
+            if (now - Math.max(entry.loadedAt, entry.refreshStartedAt) < refreshAfterMillis) {
+                return false;
+            }
+            entry.refreshStartedAt = now;
+            return true;
+        }
+    }
+
+    /**
+     * Get when a value was loaded.
+     *
+     * @param key the key of the value.
+     * @return when the value was loaded, in epoch milliseconds, or 0 if the value is not in the cache.
+     */
+    public long getLoadedAt(Object key) {
+        //this is a peek - it doesn't count as a cache hit
+        Object storeValue = getNativeCache().asMap().get(key);
+        return storeValue instanceof Entry ? ((Entry) storeValue).loadedAt : 0;
+    }
+
+    /**
+     * Check whether the Caffeine cache expires each value by the time it was loaded (with ExpireAfterLoad).
+     *
+     * @return true if a restored value is expired by the time it was loaded.
+     */
+    public boolean isExpiredByLoadTime() {
+        return getNativeCache().policy().expireVariably().isPresent();
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(Object key, Object value, long loadedAt);
+    }
+
+    /**
+     * Go through the values in the cache, with the time that each was loaded.
+     *
+     * @param consumer called for each value.
+     */
+    public void forEachEntry(EntryConsumer consumer) {
+        for (Map.Entry<Object, Object> mapEntry : getNativeCache().asMap().entrySet()) {
+            if (mapEntry.getValue() instanceof Entry) {
+                Entry entry = (Entry) mapEntry.getValue();
+                consumer.accept(mapEntry.getKey(), fromStoreValue(entry), entry.loadedAt);
+            }
+        }
+    }
+
+    /**
+     * Put a value that was loaded earlier in the cache, such as a value saved before a restart.
+     * If the value is older than the refresh time, it is reloaded the next time it is read.
+     *
+     * @param key      the key of the value.
+     * @param value    the value.
+     * @param loadedAt when the value was loaded, in epoch milliseconds.
+     * @return true if the value is in the cache - a value that is older than the cache keeps its values is dropped.
+     */
+    public boolean restore(Object key, Object value, long loadedAt) {
+        getNativeCache().put(key, new Entry(super.toStoreValue(value), loadedAt));
+        //this is a peek - it doesn't count as a cache hit
+        return getNativeCache().asMap().containsKey(key);
+    }
+
+    @Override
+    protected Object toStoreValue(Object userValue) {
+        return new Entry(super.toStoreValue(userValue), System.currentTimeMillis());
+    }
+
+    @Override
+    protected Object fromStoreValue(Object storeValue) {
+        return super.fromStoreValue(getValue(storeValue));
+    }
+
+    /**
+     * Get the value of an entry as it is stored in the Caffeine cache.
+     *
+     * @param storeValue the stored entry, which is the value itself for other caches.
+     * @return the value.
+     */
+    static Object getValue(Object storeValue) {
+        return storeValue instanceof Entry ? ((Entry) storeValue).value : storeValue;
+    }
+}
@@ -1,59 +1,60 @@
 package com.scanner.cryptoserver.util
 
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries
 import com.scanner.cryptoserver.exchange.binance.dto.CoinTicker
-import java.util.*
 
 /**
  * Class used to calculate the relative strength for a list of tickers.
+ * The calculation runs over a primitive array of close prices.
  */
 class RsiCalc {
-    private val avgList: Stack<Averages> = Stack()
 
-    private fun calculate(prices: List<CoinTicker>, periodLength: Int): Double {
-        var value: Double
-        val pricesSize = prices.size
-        val lastPrice = pricesSize - 1
-        val firstPrice = lastPrice - periodLength + 1
-        var gains: Double
-        var losses: Double
-        var avgUp: Double
-        var avgDown: Double
-        val delta = prices[lastPrice].close - prices[lastPrice - 1].close
-
-        gains = Math.max(0.0, delta)
-        losses = Math.max(0.0, -delta)
-        if (avgList.isEmpty()) {
-            for (bar in firstPrice + 1..lastPrice) {
-                val change = (prices[bar].close - prices[bar - 1].close)
-                gains += Math.max(0.0, change)
-                losses += Math.max(0.0, -change)
+    /**
+     * Calculate the RSI for each price, over the first size prices.
+     * Going backwards from the last price, the first RSI is a simple average of the gains and losses over the period,
+     * and each RSI after that is smoothed from the previous averages.
+     * The first periodLength prices do not have enough data, and have an RSI of zero.
+     */
+    fun calculateRsi(closes: DoubleArray, size: Int, periodLength: Int): DoubleArray {
+        val rsi = DoubleArray(size)
+        var avgUp = 0.0
+        var avgDown = 0.0
+        var first = true
+        var index = size - 1
+        while (index - periodLength >= 0) {
+            val delta = closes[index] - closes[index - 1]
+            var gains = Math.max(0.0, delta)
+            var losses = Math.max(0.0, -delta)
+            if (first) {
+                val firstPrice = index - periodLength + 1
+                for (bar in firstPrice + 1..index) {
+                    val change = closes[bar] - closes[bar - 1]
+                    gains += Math.max(0.0, change)
+                    losses += Math.max(0.0, -change)
+                }
+                avgUp = gains / periodLength
+                avgDown = losses / periodLength
+                first = false
+            } else {
+                avgUp = (avgUp * (periodLength - 1) + gains) / periodLength
+                avgDown = (avgDown * (periodLength - 1) + losses) / periodLength
             }
-            avgUp = gains / periodLength
-            avgDown = losses / periodLength
-            avgList.push(Averages(avgUp, avgDown))
-        } else {
-            val avg = avgList.pop()
-            avgUp = avg.avgUp
-            avgDown = avg.avgDown
-            avgUp = (avgUp * (periodLength - 1) + gains) / periodLength
-            avgDown = ((avgDown * (periodLength - 1) + losses)
-                    / periodLength)
-            avgList.add(Averages(avgUp, avgDown))
+            val value = 100.0 - 100.0 / (1.0 + avgUp / avgDown)
+            rsi[index] = "%.2f".format(value).toDouble()
+            index--
         }
-        value = 100.0 - 100.0 / (1.0 + avgUp / avgDown)
-        value = "%.2f".format(value).toDouble()
-        return value
+        return rsi
+    }
+
+    fun calculateRsi(series: CandleSeries, periodLength: Int): DoubleArray {
+        return calculateRsi(series.closes, series.size(), periodLength)
     }
 
     fun calculateRsiForTickers(prices: List<CoinTicker>, periodLength: Int) {
-        var index = prices.size - 1
-        while (index - periodLength >= 0) {
-            val subList = prices.subList(0, index + 1)
-            val rsi = calculate(subList, periodLength)
-            prices[index].rsi = rsi
-            index--
+        val closes = DoubleArray(prices.size) { prices[it].close }
+        val rsi = calculateRsi(closes, closes.size, periodLength)
+        for (index in periodLength until prices.size) {
+            prices[index].rsi = rsi[index]
         }
     }
-
-    private class Averages(val avgUp: Double, val avgDown: Double)
-}
\ No newline at end of file
+}
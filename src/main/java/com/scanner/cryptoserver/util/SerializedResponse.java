@@ -0,0 +1,177 @@
+package com.scanner.cryptoserver.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A value serialized to JSON once, along with a gzip copy of the JSON, so that it can be written to any number of
+ * responses without being serialized again. This is used for large values that change only when they are refreshed,
+ * such as the 24-hour data for all coins, which includes the icons.
+ * The byte arrays are shared by all the responses, and must not be modified.
+ * The response has an ETag made from the JSON: a client that sends the ETag back (in "If-None-Match")
+ * gets a "304 Not Modified" with no body until the value changes.
+ */
+public class SerializedResponse {
+    private static final String GZIP = "gzip";
+
+    //the version of the value that was serialized (usually the value itself) - used only to check whether the value has changed
+    private final Object version;
+    private final byte[] json;
+    private final byte[] gzip;
+    private final String etag;
+    //the gzip copy is a different representation, so it has its own ETag
+    private final String gzipEtag;
+
+    private SerializedResponse(Object version, byte[] json, byte[] gzip) {
+        this.version = version;
+        this.json = json;
+        this.gzip = gzip;
+        String hash = DigestUtils.md5DigestAsHex(json);
+        this.etag = "\"" + hash + "\"";
+        this.gzipEtag = "\"" + hash + "-" + GZIP + "\"";
+    }
+
+    /**
+     * Serialize a value to JSON, and compress the JSON.
+     *
+     * @param mapper the application's object mapper, so that the JSON is the same as the other responses.
+     * @param value  the value, such as a list of coins.
+     * @return the serialized response.
+     */
+    public static SerializedResponse create(ObjectMapper mapper, Object value) {
+        return create(mapper, value, value);
+    }
+
+    private static SerializedResponse create(ObjectMapper mapper, Object version, Object value) {
+        try {
+            byte[] json = mapper.writeValueAsBytes(value);
+            return new SerializedResponse(version, json, compress(json));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Unable to serialize the response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the serialized response for a value, reusing the latest response if it was made from the same value.
+     * Values are compared by identity: a refreshed snapshot is a new object, so it is serialized again.
+     *
+     * @param mapper the application's object mapper.
+     * @param latest the latest response made by the caller, which is replaced if the value has changed.
+     * @param value  the value.
+     * @return the serialized response for the value.
+     */
+    public static SerializedResponse get(ObjectMapper mapper, AtomicReference<SerializedResponse> latest, Object value) {
+        SerializedResponse response = latest.get();
+        if (response != null && response.version == value) {
+            return response;
+        }
+        //two callers may serialize the same new value at the same time - that is harmless, and only happens once per refresh
+        response = create(mapper, value);
+        latest.set(response);
+        return response;
+    }
+
+    /**
+     * Get the serialized response for a value that is made from other values, such as the tickers made from a candle series.
+     * The value is only made and serialized when the version has changed. Versions are compared with equals:
+     * a list of snapshots is the same version as long as each snapshot in it is the same object.
+     *
+     * @param mapper  the application's object mapper.
+     * @param latest  the latest response made by the caller, which is replaced if the version has changed.
+     * @param version the version of the value, such as the candle series the value is made from.
+     * @param value   makes the value.
+     * @return the serialized response for the value.
+     */
+    public static SerializedResponse get(ObjectMapper mapper, AtomicReference<SerializedResponse> latest, Object version, Supplier<?> value) {
+        SerializedResponse response = latest.get();
+        if (response != null && response.version.equals(version)) {
+            return response;
+        }
+        response = create(mapper, version, value.get());
+        latest.set(response);
+        return response;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Create the response entity, using the gzip copy if the client accepts it.
+     * If the client already has this value (its "If-None-Match" has the ETag), the response is a "304 Not Modified" with no body.
+     *
+     * @param acceptEncoding the "Accept-Encoding" header of the request - can be null.
+     * @param ifNoneMatch    the "If-None-Match" header of the request - can be null.
+     * @param maxAge         how long the client can cache the response, such as until the value is next refreshed - can be null.
+     * @return the response entity.
+     */
+    public ResponseEntity<byte[]> toResponseEntity(String acceptEncoding, String ifNoneMatch, Duration maxAge) {
+        boolean gzipped = acceptEncoding != null && acceptEncoding.contains(GZIP);
+        String responseEtag = gzipped ? gzipEtag : etag;
+        HttpStatus status = matches(ifNoneMatch, responseEtag) ? HttpStatus.NOT_MODIFIED : HttpStatus.OK;
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status)
+                .eTag(responseEtag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (maxAge != null) {
+            builder.cacheControl(CacheControl.maxAge(maxAge.getSeconds(), TimeUnit.SECONDS));
+        }
+        if (status == HttpStatus.NOT_MODIFIED) {
+            return builder.build();
+        }
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (gzipped) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(gzip);
+        }
+        return builder.body(json);
+    }
+
+    private static boolean matches(String ifNoneMatch, String responseEtag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            //a weak ETag matches for a GET - the same as the strong one
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(responseEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,256 @@
+package com.scanner.cryptoserver.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a snapshot of data from an exchange fresh, for as long as clients are asking for it.
+ * The snapshot is refreshed in the background on a long-lived scheduler, and each refresh replaces the snapshot in one step -
+ * so readers always get a complete snapshot right away, and never wait for a call to the exchange.
+ * The only exception is the very first read, when there is no snapshot yet.
+ * When there have been no reads for the demand window, and there are no listeners, the refreshes stop
+ * (to stay within the exchange quotas), and start again with the next read.
+ *
+ * @param <T> the type of the snapshot, such as a list of 24-hour coin data.
+ */
+public class SnapshotRefresher<T> {
+    private static final Logger Log = LoggerFactory.getLogger(SnapshotRefresher.class);
+
+    private final String name;
+    private final Supplier<T> loader;
+    private final long refreshMillis;
+    private final long demandMillis;
+    private final AtomicReference<Snapshot<T>> snapshot = new AtomicReference<>();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final List<Consumer<T>> listeners = new CopyOnWriteArrayList<>();
+    private final Object loadLock = new Object();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile long lastDemand;
+
+    private static class Snapshot<T> {
+        private final T value;
+        private final long loadedAt;
+
+        private Snapshot(T value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * @param name            the name of the snapshot, such as "binanceusa-All24HourTicker" - used for the scheduler thread and logging.
+     * @param loader          retrieves the data from the exchange.
+     * @param refreshInterval how often the snapshot is refreshed while there is demand.
+     * @param demandWindow    how long after the last read the snapshot is kept fresh.
+     */
+    public SnapshotRefresher(String name, Supplier<T> loader, Duration refreshInterval, Duration demandWindow) {
+        this.name = name;
+        this.loader = loader;
+        this.refreshMillis = refreshInterval.toMillis();
+        this.demandMillis = demandWindow.toMillis();
+    }
+
+    /**
+     * Get the current snapshot. This records demand for the snapshot, which keeps it being refreshed.
+     *
+     * @return the snapshot, or null if the data could not be retrieved.
+     */
+    public T get() {
+        long now = System.currentTimeMillis();
+        lastDemand = now;
+        startScheduler();
+        Snapshot<T> current = snapshot.get();
+        if (current == null) {
+            //nothing has been published yet - this is the only time a reader waits for the exchange
+            boolean loaded = false;
+            synchronized (loadLock) {
+                current = snapshot.get();
+                if (current == null) {
+                    current = store(loader.get());
+                    loaded = current != null;
+                }
+            }
+            if (loaded) {
+                notifyListeners(current.value);
+            }
+            return current == null ? null : current.value;
+        }
+        if (now - current.loadedAt > refreshMillis) {
+            //the refreshes stopped while there was no demand - refresh now, but don't make this reader wait for it
+            refreshInBackground();
+        }
+        return current.value;
+    }
+
+    /**
+     * Seed the snapshot with data that was loaded earlier, such as data saved before a restart.
+     * The seed is ignored if there is already a snapshot. If the seed is older than the refresh interval,
+     * the next read gets the seed right away, and the snapshot is refreshed in the background.
+     *
+     * @param value    the data.
+     * @param loadedAt when the data was loaded, in epoch milliseconds.
+     */
+    public void seed(T value, long loadedAt) {
+        if (value != null) {
+            snapshot.compareAndSet(null, new Snapshot<>(value, loadedAt));
+        }
+    }
+
+    /**
+     * Get the current snapshot, without recording demand for it.
+     *
+     * @return the snapshot, or null if nothing has been loaded.
+     */
+    public T peek() {
+        Snapshot<T> current = snapshot.get();
+        return current == null ? null : current.value;
+    }
+
+    /**
+     * @return when the current snapshot was loaded, in epoch milliseconds - or zero if nothing has been loaded.
+     */
+    public long getLoadedAt() {
+        Snapshot<T> current = snapshot.get();
+        return current == null ? 0 : current.loadedAt;
+    }
+
+    /**
+     * Get the time until the snapshot is next refreshed, such as for how long a client can cache the snapshot.
+     *
+     * @return the time until the next refresh - zero if the refresh is due, or nothing has been loaded.
+     */
+    public Duration getTimeToNextRefresh() {
+        Snapshot<T> current = snapshot.get();
+        if (current == null) {
+            return Duration.ZERO;
+        }
+        long millis = current.loadedAt + refreshMillis - System.currentTimeMillis();
+        return Duration.ofMillis(Math.max(millis, 0));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Refresh the snapshot now. If the data can't be retrieved, the previous snapshot is kept.
+     */
+    public void refresh() {
+        Snapshot<T> refreshed;
+        synchronized (loadLock) {
+            try {
+                refreshed = store(loader.get());
+            } catch (RuntimeException e) {
+                Log.error("Unable to refresh {}: {}", name, e.getMessage());
+                return;
+            }
+        }
+        //the listeners are called after the lock is released, so that a slow listener doesn't hold up the next load
+        if (refreshed != null) {
+            notifyListeners(refreshed.value);
+        }
+    }
+
+    /**
+     * Add a listener that is called with each new snapshot. While there are listeners, the snapshot is kept fresh
+     * even if no one reads it.
+     *
+     * @param listener called on the refresh thread with each new snapshot, after the snapshot has been stored.
+     */
+    public void addListener(Consumer<T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stop refreshing the snapshot.
+     */
+    public void shutdown() {
+        ScheduledExecutorService current = scheduler;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * Replace the snapshot with a new value.
+     *
+     * @return the new snapshot, or null if there is no value - the previous snapshot is kept.
+     */
+    private Snapshot<T> store(T value) {
+        if (value == null) {
+            return null;
+        }
+        Snapshot<T> newSnapshot = new Snapshot<>(value, System.currentTimeMillis());
+        snapshot.set(newSnapshot);
+        return newSnapshot;
+    }
+
+    private void notifyListeners(T value) {
+        for (Consumer<T> listener : listeners) {
+            try {
+                listener.accept(value);
+            } catch (RuntimeException e) {
+                Log.error("Listener for {} failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void refreshInBackground() {
+        if (refreshPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    try {
+                        refresh();
+                    } finally {
+                        refreshPending.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                //the refresher has been shut down
+                refreshPending.set(false);
+            }
+        }
+    }
+
+    private void runScheduledRefresh() {
+        if (listeners.isEmpty() && System.currentTimeMillis() - lastDemand > demandMillis) {
+            //no one has asked for the snapshot in awhile - don't use up the exchange quota
+            return;
+        }
+        refresh();
+    }
+
+    private void startScheduler() {
+        if (scheduler != null) {
+            return;
+        }
+        synchronized (this) {
+            if (scheduler == null) {
+                Log.debug("Starting snapshot refresher for {}", name);
+                ScheduledExecutorService newScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "refresher-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                newScheduler.scheduleWithFixedDelay(this::runScheduledRefresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+                scheduler = newScheduler;
+            }
+        }
+    }
+}
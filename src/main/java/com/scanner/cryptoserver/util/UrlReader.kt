@@ -1,15 +1,11 @@
 package com.scanner.cryptoserver.util
 
-import java.net.URL
-
 /**
  * Class that allows a mock url reader to be used if not using an exchange api, for testing purposes.
  */
 interface UrlReader {
 
-    fun readFromUrl(address: String): String {
-        return URL(address).readText()
-    }
+    fun readFromUrl(address: String): String
 
     fun readFromUrl(): String
-}
\ No newline at end of file
+}
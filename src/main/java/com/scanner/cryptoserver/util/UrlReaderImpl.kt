@@ -1,11 +1,32 @@
 package com.scanner.cryptoserver.util
 
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.impl.client.CloseableHttpClient
+import org.apache.http.util.EntityUtils
+import org.springframework.http.HttpHeaders
 import org.springframework.stereotype.Service
+import java.io.IOException
+import java.nio.charset.StandardCharsets
 
 @Service
-class UrlReaderImpl : UrlReader {
+class UrlReaderImpl(private val httpClient: CloseableHttpClient) : UrlReader {
+
+    //read with the shared, pooled http client, which has the timeouts for the host
+    override fun readFromUrl(address: String): String {
+        val request = HttpGet(address)
+        request.setHeader(HttpHeaders.ACCEPT, "application/json")
+        httpClient.execute(request).use { response ->
+            val body = EntityUtils.toString(response.entity, StandardCharsets.UTF_8)
+            val status = response.statusLine.statusCode
+            if (status >= 300) {
+                throw IOException("Unable to read $address: HTTP $status")
+            }
+            return body
+        }
+    }
+
     //this method will be implemented (mocked) for testing, etc.
     override fun readFromUrl(): String {
         return ""
     }
-}
\ No newline at end of file
+}
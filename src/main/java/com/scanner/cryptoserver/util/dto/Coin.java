@@ -6,7 +6,6 @@ import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing;
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor;
 
 import java.util.Arrays;
-import java.util.Optional;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Coin {
@@ -81,6 +80,23 @@ public class Coin {
         return permissions == null ? new String[0] : permissions;
     }
 
+    /**
+     * Create a copy of the coin, such as for a new exchange info snapshot.
+     *
+     * @return the copy.
+     */
+    public Coin copy() {
+        Coin copy = new Coin();
+        copy.id = id;
+        copy.symbol = symbol;
+        copy.baseAsset = baseAsset;
+        copy.quoteAsset = quoteAsset;
+        copy.status = status;
+        copy.marketCap = marketCap;
+        copy.permissions = permissions;
+        return copy;
+    }
+
     /**
      * Add the market cap and id value from the coin market cap to the symbol.
      *
@@ -89,11 +105,11 @@ public class Coin {
      */
     public void addMarketCapAndId(ExchangeVisitor exchangeVisitor, CoinMarketCapListing listing) {
         //find the symbol (i.e. "BTC") in the coin market cap info, and get the market cap value from it and set it in the exchange symbol
-        Optional<CoinMarketCapData> data = listing.findData(exchangeVisitor.getSymbol(getBaseAsset()), exchangeVisitor.getName(getBaseAsset()));
-        data.ifPresent(d -> {
-            setMarketCap(d.getMarketCap());
-            setId(d.getId());
-        });
+        CoinMarketCapData data = listing.getJoin(exchangeVisitor).find(getBaseAsset());
+        if (data != null) {
+            setMarketCap(data.getMarketCap());
+            setId(data.getId());
+        }
     }
 
     /**
@@ -0,0 +1,75 @@
+package com.scanner.cryptoserver
+
+import com.scanner.cryptoserver.util.RefreshAheadCache
+import org.springframework.cache.caffeine.CaffeineCache
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+class CachingConfigTest extends Specification {
+    private CacheSpecs cacheSpecs
+
+    def setup() {
+        cacheSpecs = new CacheSpecs()
+        cacheSpecs.getSpecs().put("CoinCache", new CacheSpecs.Spec(maximumWeight: 10, expireAfterWrite: Duration.ofMinutes(5), refreshAfter: Duration.ofMinutes(1)))
+        cacheSpecs.getSpecs().put("All24HourTicker", new CacheSpecs.Spec(maximumSize: 5, expireAfterWrite: Duration.ofMinutes(15)))
+        cacheSpecs.getSpecs().put("IconCache", new CacheSpecs.Spec(maximumWeight: 10, expireAfterWrite: Duration.ofDays(5)))
+    }
+
+    def "test the cache manager creates the caches from their specs"() {
+        given:
+          def cacheManager = new CachingConfig(cacheSpecs).cacheManager()
+
+        expect:
+          assert cacheManager.getCache("CoinCache") instanceof RefreshAheadCache
+          //per-exchange caches use the spec after the exchange name - the 24-hour data is saved in the cache snapshot,
+          //so it keeps the time each value was loaded
+          assert cacheManager.getCache("binanceusa-All24HourTicker") instanceof RefreshAheadCache
+          def iconCache = cacheManager.getCache("IconCache")
+          assert iconCache instanceof CaffeineCache
+          assert !(iconCache instanceof RefreshAheadCache)
+    }
+
+    def "test the cache manager fails for a cache without a spec"() {
+        given:
+          def cacheManager = new CachingConfig(cacheSpecs).cacheManager()
+
+        when:
+          cacheManager.getCache("NoSuchCache")
+
+        then:
+          thrown(IllegalStateException)
+    }
+
+    def "test a restored value is only kept for the rest of its time"() {
+        given:
+          def cache = CachingConfig.createCache("CoinCache", cacheSpecs.getSpec("CoinCache").get()) as RefreshAheadCache
+          def now = System.currentTimeMillis()
+
+        when:
+          cache.restore("BTCUSD", [1], now - Duration.ofMinutes(3).toMillis())
+          cache.restore("ETHUSD", [2], now - Duration.ofMinutes(6).toMillis())
+          def expiresAfter = cache.getNativeCache().policy().expireVariably().get().getExpiresAfter("BTCUSD", TimeUnit.SECONDS)
+
+        then:
+          //the cache keeps the values for five minutes after they are loaded
+          assert expiresAfter.getAsLong() <= Duration.ofMinutes(2).getSeconds()
+          assert expiresAfter.getAsLong() > Duration.ofMinutes(1).getSeconds()
+          assert cache.get("BTCUSD").get() == [1]
+          assert cache.get("ETHUSD") == null
+    }
+
+    def "test a cache with a maximum weight evicts by the size of the values"() {
+        given:
+          def cache = CachingConfig.createCache("CoinCache", cacheSpecs.getSpec("CoinCache").get()) as CaffeineCache
+
+        when:
+          cache.put("BTCUSD", (1..6).toList())
+          cache.put("ETHUSD", (1..6).toList())
+          cache.getNativeCache().cleanUp()
+
+        then:
+          assert cache.getNativeCache().estimatedSize() == 1
+    }
+}
@@ -0,0 +1,68 @@
+package com.scanner.cryptoserver
+
+import com.sun.net.httpserver.HttpServer
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.util.EntityUtils
+import spock.lang.Specification
+
+import java.time.Duration
+
+class HttpClientConfigTest extends Specification {
+    private HttpServer server
+    private HttpClientProperties properties
+
+    def setup() {
+        //a local server that answers slowly
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+        server.createContext("/", { exchange ->
+            Thread.sleep(500)
+            def body = "ok".getBytes("UTF-8")
+            exchange.sendResponseHeaders(200, body.length)
+            exchange.getResponseBody().withCloseable { it.write(body) }
+        })
+        server.start()
+        properties = new HttpClientProperties(maxTotal: 20, maxPerHost: 5, readTimeout: Duration.ofSeconds(5))
+    }
+
+    def cleanup() {
+        server.stop(0)
+    }
+
+    def "test the connection pool uses the limits from the properties"() {
+        given:
+          def connectionManager = new HttpClientConfig(properties).httpConnectionManager()
+
+        expect:
+          assert connectionManager.getMaxTotal() == 20
+          assert connectionManager.getDefaultMaxPerRoute() == 5
+
+        cleanup:
+          connectionManager.close()
+    }
+
+    def "test a host uses its own read timeout"() {
+        given:
+          properties.getHosts().put("localhost", new HttpClientProperties.Host(readTimeout: Duration.ofMillis(100)))
+          def config = new HttpClientConfig(properties)
+          def client = config.httpClient(config.httpConnectionManager())
+          def port = server.getAddress().getPort()
+
+        when:
+          //"127.0.0.1" uses the default timeout
+          def response = client.execute(new HttpGet("http://127.0.0.1:$port/"))
+
+        then:
+          assert EntityUtils.toString(response.getEntity()) == "ok"
+
+        when:
+          response.close()
+          //"localhost" has a short timeout
+          client.execute(new HttpGet("http://localhost:$port/"))
+
+        then:
+          thrown(SocketTimeoutException)
+
+        cleanup:
+          client.close()
+    }
+}
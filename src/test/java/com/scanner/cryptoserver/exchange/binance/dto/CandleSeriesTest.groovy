@@ -0,0 +1,93 @@
+package com.scanner.cryptoserver.exchange.binance.dto
+
+import com.scanner.cryptoserver.util.RsiCalc
+import spock.lang.Specification
+
+class CandleSeriesTest extends Specification {
+
+    def "test add() grows the series past its capacity"() {
+        given:
+          def series = new CandleSeries("BTCUSD", 2)
+
+        when:
+          (0..<5).each { series.add(it, it, it, it, it * 10.0, it, it + 100, it, it) }
+          series.trimToSize()
+
+        then:
+          assert series.size() == 5
+          assert !series.isEmpty()
+          assert series.getClose(4) == 40.0
+          assert series.getCloseTime(4) == 104L
+          assert series.getNumberOfTrades(3) == 3
+          (0..<5).each { assert Double.isNaN(series.getUsdVolume(it)) }
+    }
+
+    def "test merge() orders the candles by close time"() {
+        given:
+          def recent = new CandleSeries("BTCUSD")
+          recent.add(300, 1.0, 1.0, 1.0, 3.0, 1.0, 399, 1.0, 1)
+          recent.add(400, 1.0, 1.0, 1.0, 4.0, 1.0, 499, 1.0, 1)
+          def older = new CandleSeries("BTCUSD")
+          older.add(100, 1.0, 1.0, 1.0, 1.0, 1.0, 199, 1.0, 1)
+          older.add(200, 1.0, 1.0, 1.0, 2.0, 1.0, 299, 1.0, 1)
+          older.setUsdVolume(1, 25.0)
+
+        when:
+          def merged = CandleSeries.merge(recent, older)
+
+        then:
+          assert merged.size() == 4
+          assert (0..<4).collect { merged.getCloseTime(it) } == [199L, 299L, 399L, 499L]
+          assert (0..<4).collect { merged.getClose(it) } == [1.0, 2.0, 3.0, 4.0]
+          assert merged.getUsdVolume(1) == 25.0
+    }
+
+    def "test toTickers()"() {
+        given:
+          def series = new CandleSeries("LTCUSD")
+          series.add(100, 1.5, 2.5, 0.5, 2.0, 10.0, 199, 20.0, 7)
+          series.add(200, 2.0, 3.0, 1.0, 2.5, 12.0, 299, 30.0, 8)
+          series.setUsdVolume(0, 15.0)
+
+        when:
+          def tickers = series.toTickers()
+
+        then:
+          assert tickers.size() == 2
+          def ticker = tickers[0]
+          assert ticker.getSymbol() == "LTCUSD"
+          assert ticker.getOpenTime() == 100L
+          assert ticker.getOpen() == 1.5
+          assert ticker.getHigh() == 2.5
+          assert ticker.getLow() == 0.5
+          assert ticker.getClose() == 2.0
+          assert ticker.getVolume() == 10.0
+          assert ticker.getCloseTime() == 199L
+          assert ticker.getQuoteAssetVolume() == 20.0
+          assert ticker.getNumberOfTrades() == 7
+          assert ticker.getUsdVolume() == 15.0
+          //the USD volume was not computed for the second candle
+          assert tickers[1].getUsdVolume() == null
+    }
+
+    def "test RSI is the same for a series and for its tickers"() {
+        given:
+          def closes = [44.34, 44.09, 44.15, 43.61, 44.33, 44.83, 45.10, 45.42, 45.84, 46.08, 45.89, 46.03, 45.61, 46.28, 46.28, 46.00]
+          def series = new CandleSeries("BTCUSD")
+          closes.eachWithIndex { close, index -> series.add(index, close, close, close, close, 1.0, index, 1.0, 1) }
+          def tickers = series.toTickers()
+          def rsiCalc = new RsiCalc()
+
+        when:
+          def rsi = rsiCalc.calculateRsi(series, 14)
+          rsiCalc.calculateRsiForTickers(tickers, 14)
+
+        then:
+          assert rsi.length == closes.size()
+          (0..<14).each { assert rsi[it] == 0.0 }
+          assert rsi[14] != 0.0
+          assert rsi[15] != 0.0
+          tickers.eachWithIndex { ticker, index -> assert ticker.getRsi() == rsi[index] }
+          series.toTickers(rsi).eachWithIndex { ticker, index -> assert ticker.getRsi() == rsi[index] }
+    }
+}
@@ -1,5 +1,7 @@
 package com.scanner.cryptoserver.exchange.binance.service
 
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
 import com.scanner.cryptoserver.exchange.binance.dto.CoinTicker
 import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapService
@@ -9,7 +11,10 @@ import com.scanner.cryptoserver.exchange.coinmarketcap.dto.ExchangeInfo
 import com.scanner.cryptoserver.exchange.service.ExchangeVisitor
 import com.scanner.cryptoserver.util.CacheUtil
 import com.scanner.cryptoserver.util.dto.Coin
+import org.springframework.http.HttpStatus
 import org.springframework.http.ResponseEntity
+import org.springframework.mock.http.client.MockClientHttpResponse
+import org.springframework.web.client.ResponseExtractor
 import org.springframework.web.client.RestOperations
 import org.springframework.web.client.RestTemplate
 import spock.lang.Specification
@@ -17,6 +22,7 @@ import spock.lang.Unroll
 
 import java.time.LocalDateTime
 import java.time.ZoneOffset
+import java.util.concurrent.atomic.AtomicInteger
 
 class BinanceExchangeServiceImplTest extends Specification {
     private BinanceExchangeServiceImpl service
@@ -32,25 +38,30 @@ class BinanceExchangeServiceImplTest extends Specification {
         coinMarketCapService = Mock(CoinMarketCapService)
         cacheUtil = Mock(CacheUtil)
         exchangeVisitor = Mock(ExchangeVisitor)
-        service = new BinanceExchangeServiceImpl(restTemplate, urlExtractor, cacheUtil, coinMarketCapService, exchangeVisitor)
+        service = new BinanceExchangeServiceImpl(restTemplate, urlExtractor, cacheUtil, coinMarketCapService, exchangeVisitor, new ObjectMapper())
     }
 
-    def "test get24HrAllCoinTicker() when cache has data"() {
+    def cleanup() {
+        service.shutdown()
+    }
+
+    def "test get24HrAllCoinTicker() returns the snapshot without calling the exchange again"() {
         given:
           def coinData = new CoinDataFor24Hr()
           def symbol = "BTCUSD"
           coinData.setSymbol(symbol)
+          cacheUtil.retrieveFromCache(_, "binance-ExchangeInfo", _) >> getExchangeInfo([symbol])
 
         when:
-          cacheUtil.retrieveFromCache(*_) >> [coinData]
-
-        then:
           def coins = service.get24HrAllCoinTicker()
+          def coinsAgain = service.get24HrAllCoinTicker()
 
-        expect:
+        then:
+          1 * restTemplate.execute(*_) >> [coinData]
           assert coins
           assert coins.size() == 1
           assert coins.get(0).getSymbol() == symbol
+          assert coinsAgain.is(coins)
     }
 
     @Unroll
@@ -102,19 +113,19 @@ class BinanceExchangeServiceImplTest extends Specification {
           map["volume"] = volume
           map["quoteVolume"] = quoteVolume
 
-          def coinList = (symbol != null) ? [map] as LinkedHashMap<String, String>[] : [] as LinkedHashMap<String, String>[]
-          def linkedHashMapResponse = ResponseEntity.of(Optional.of(coinList)) as ResponseEntity<LinkedHashMap[]>
+          def coinList = (symbol != null) ? [map] : []
+          def json = new ObjectMapper().writeValueAsString(coinList)
 
           //the following represents exchange information - metadata about coins on an exchange
           def exchangeInfo = new ExchangeInfo()
           def exchangeSymbol = new Coin(symbol: symbol, baseAsset: coin, quoteAsset: currency, status: status, permissions: permissions)
           def exchangeSymbols = [exchangeSymbol]
           exchangeInfo.setCoins(exchangeSymbols)
-          def exchangeInfoResponse = ResponseEntity.of(Optional.of(exchangeInfo)) as ResponseEntity<ExchangeInfo>
 
         when: "mocks are called"
           cacheUtil.retrieveFromCache(_, "binance-ExchangeInfo", _) >>> [exchangeInfo, exchangeInfo]
-          restTemplate.getForEntity(*_,) >>> [linkedHashMapResponse, exchangeInfoResponse]
+          //the service parses the response body as it is read
+          restTemplate.execute(*_) >> { args -> (args[3] as ResponseExtractor).extractData(getMockResponse(json)) }
           //here, we mock the call to the market cap service that sets the market cap
           //this ensures that the service makes the call to set the market cap
           coinMarketCapService.setMarketCapDataFor24HrData(*_) >> { args ->
@@ -163,23 +174,54 @@ class BinanceExchangeServiceImplTest extends Specification {
           null          | null      | null     | null      | null        | null               | null      | null      | null      | null          | null          | null      | null                  | false
     }
 
+    def "test get24HrAllCoinTicker() for a page does not change the cached rows"() {
+        given:
+          def exchangeInfo = new ExchangeInfo(coins: [new Coin(symbol: "LTCUSD", baseAsset: "LTC", quoteAsset: "USD", status: "TRADING", permissions: ["SPOT"])])
+          def row = new CoinDataFor24Hr(symbol: "LTCUSD", priceChangePercent: 1.2345)
+          cacheUtil.retrieveFromCache(_, "binance-ExchangeInfo", _) >> exchangeInfo
+          cacheUtil.retrieveFromCache(_, "AllTickerRows", _) >> [row]
+          coinMarketCapService.setMarketCapDataFor24HrData(*_) >> { args ->
+              (args.get(1) as List<CoinDataFor24Hr>).forEach { it.setMarketCap(100.0) }
+          }
+
+        when:
+          def coins = service.get24HrAllCoinTicker(1, 10)
+
+        then:
+          assert coins.size() == 1
+          assert !coins[0].is(row)
+          assert coins[0].getCoin() == "LTC"
+          assert coins[0].getMarketCap() == 100.0
+          assert coins[0].getPriceChangePercent() == 1.23
+          //the cached row is shared by the other callers, so it is not filled in
+          assert row.getCoin() == null
+          assert row.getMarketCap() == 0.0
+          assert row.getPriceChangePercent() == 1.2345
+    }
+
     @Unroll("Test call of coin ticker for #symbol for #interval and #daysOrMonths")
     def "test callCoinTicker"() {
         given:
           def now = LocalDateTime.now()
           def closeTime1 = now.minusHours(2).toInstant(ZoneOffset.UTC).toEpochMilli()
           def closeTime2 = now.minusHours(1).toInstant(ZoneOffset.UTC).toEpochMilli()
-          def response1 = getMockCoinTicker(closeTime1, closeTime2)
+          def response1 = getMockCoinTickerJson(closeTime1, closeTime2)
 
           def prevDayCloseTime1 = now.minusDays(1).minusHours(2).toInstant(ZoneOffset.UTC).toEpochMilli()
           def prevDayCloseTime2 = now.minusDays(1).minusHours(1).toInstant(ZoneOffset.UTC).toEpochMilli()
-          def response2 = getMockCoinTicker(prevDayCloseTime1, prevDayCloseTime2)
+          def response2 = getMockCoinTickerJson(prevDayCloseTime1, prevDayCloseTime2)
+          def responses = [response1, response2]
+          def calls = new AtomicInteger()
 
           def caughtException
 
         when:
           //Here, response1 is the response for the first time the rest template is called; response2 is the second time the rest template is called.
-          restTemplate.getForEntity(*_) >>> [response1, response2]
+          //The calls can be made asynchronously, so a thread-safe counter is used to pick the response.
+          restTemplate.execute(*_) >> { args ->
+              def json = responses[Math.min(calls.getAndIncrement(), responses.size() - 1)]
+              return (args[3] as ResponseExtractor).extractData(getMockResponse(json))
+          }
 
         then:
           def tickers = null
@@ -199,8 +241,7 @@ class BinanceExchangeServiceImplTest extends Specification {
               assert caughtException == null
               assert tickers
               assert tickers.size() > 0
-              //"it" is a groovy keyword = it is the function parameter for each item in the list
-              tickers.each { assert it.getSymbol() == symbol }
+              assert tickers.getSymbol() == symbol
               //Here, we verify that the service for 1hr/1m makes two asynch calls to get data:
               //This is because the service needs to make two calls for 1-hour month data, since there is too much data to bring back in one call.
               //Here, we verify this by checking the size of the returned data: it should be 4 (meaning, both responses in the "when" section were used - two calls).
@@ -208,10 +249,10 @@ class BinanceExchangeServiceImplTest extends Specification {
               if (interval == "1h" && daysOrMonths == "1m") {
                   assert tickers.size() == 4
                   //also, verify that the tickers are sorted - the service sorts the tickers since the data may come back unpredictably due to asynch calls
-                  assert prevDayCloseTime1 == tickers[0].getCloseTime()
-                  assert prevDayCloseTime2 == tickers[1].getCloseTime()
-                  assert closeTime1 == tickers[2].getCloseTime()
-                  assert closeTime2 == tickers[3].getCloseTime()
+                  assert prevDayCloseTime1 == tickers.getCloseTime(0)
+                  assert prevDayCloseTime2 == tickers.getCloseTime(1)
+                  assert closeTime1 == tickers.getCloseTime(2)
+                  assert closeTime2 == tickers.getCloseTime(3)
               } else {
                   assert tickers.size() == 2
               }
@@ -230,13 +271,8 @@ class BinanceExchangeServiceImplTest extends Specification {
     @Unroll
     def "test getTickerData"() {
         given:
-          def coinTicker1 = new CoinTicker(symbol: symbol, openDate: "Nov 10, 2019", closeDate: "Nov 11, 2019", open: open1, close: close1, volume: volume1)
-          def coinTicker2 = new CoinTicker(symbol: symbol, openDate: "Nov 12, 2019", closeDate: "Nov 13, 2019", open: open2, close: close2, volume: volume2)
-          def coinTickerList = [coinTicker1, coinTicker2]
-
-          def coinWithUsdTicker1 = new CoinTicker(symbol: baseAsset + usdQuote, openDate: "Nov 10, 2019", closeDate: "Nov 11, 2019", open: usdOpen1, close: usdClose1, volume: usdVolume)
-          def coinWithUsdTicker2 = new CoinTicker(symbol: baseAsset + usdQuote, openDate: "Nov 10, 2019", closeDate: "Nov 11, 2019", open: usdOpen2, close: usdClose2, volume: usdVolume)
-          def coinWithUsdTickerList = [coinWithUsdTicker1, coinWithUsdTicker2]
+          def coinTickerList = inCache ? getCandleSeries(symbol, [open1, open2], [close1, close2], [volume1, volume2]) : null
+          def coinWithUsdTickerList = inCache ? getCandleSeries(baseAsset + usdQuote, [usdOpen1, usdOpen2], [usdClose1, usdClose2], [usdVolume, usdVolume]) : null
 
           def bnbusdCoin = new Coin(symbol: quoteAsset + usdQuote, baseAsset: quoteAsset, quoteAsset: usdQuote)
           def otherCoin = new Coin(symbol: symbol, baseAsset: baseAsset, quoteAsset: quoteAsset)
@@ -274,23 +310,19 @@ class BinanceExchangeServiceImplTest extends Specification {
     @Unroll
     def "test addUsdVolume"() {
         given:
-          def ticker1 = new CoinTicker(volume: volume1, open: open1, close: close1)
-          def ticker2 = new CoinTicker(volume: volume2, open: open2, close: close2)
-          def coins = [ticker1, ticker2]
-
-          def usdTicker1 = new CoinTicker(open: usdOpen1, close: usdClose1)
-          def usdTicker2 = new CoinTicker(open: usdOpen2, close: usdClose2)
-          def usdTickers = [usdTicker1, usdTicker2]
+          def coins = getCandleSeries("BTCBNB", [open1, open2], [close1, close2], [volume1, volume2])
+          def usdTickers = getCandleSeries("BNBUSDT", [usdOpen1, usdOpen2], [usdClose1, usdClose2], [0.0, 0.0])
 
         when:
           service.addUsdVolume(coins, usdTickers)
 
         then:
-          assert ticker1.getUsdVolume() != null
-          assert ticker2.getUsdVolume() != null
+          def tickers = coins.toTickers()
+          assert tickers[0].getUsdVolume() != null
+          assert tickers[1].getUsdVolume() != null
           //the USD volume is computed as the coin price * the usd price at open + the coin price * the usd price at close divided by 2
-          assert ticker1.getUsdVolume() == ((open1 * usdOpen1 + close1 * usdClose1) / 2.0) * volume1
-          assert ticker2.getUsdVolume() == ((open2 * usdOpen2 + close2 * usdClose2) / 2.0) * volume2
+          assert coins.getUsdVolume(0) == ((open1 * usdOpen1 + close1 * usdClose1) / 2.0) * volume1
+          assert coins.getUsdVolume(1) == ((open2 * usdOpen2 + close2 * usdClose2) / 2.0) * volume2
 
         where:
           volume1 | volume2 | open1 | close1 | open2 | close2 | usdOpen1 | usdClose1 | usdOpen2 | usdClose2
@@ -460,10 +492,8 @@ class BinanceExchangeServiceImplTest extends Specification {
 
     def "test getRsiTickerData"() {
         given:
-          def coinTicker1 = new CoinTicker(symbol: "BTC", open: 9999.0, close: 10000.0, volume: 10.0)
-          def coinTicker2 = new CoinTicker(symbol: "LTC", open: 170.0, close: 175.0, volume: 10.0)
           def symbols = ["BTCUSD"]
-          def coinTickerList = [coinTicker1, coinTicker2]
+          def coinTickerList = getCandleSeries("BTCUSD", [9999.0, 170.0], [10000.0, 175.0], [10.0, 10.0])
           def coins = [new Coin(symbol: "BTCUSD", quoteAsset: "USD"), new Coin(symbol: "LTCBTC", quoteAsset: "BTC")]
           def exchangeInfo = new ExchangeInfo(coins: coins)
 
@@ -531,8 +561,11 @@ class BinanceExchangeServiceImplTest extends Specification {
           def icon3 = null
 
         when:
-          cacheUtil.retrieveFromCache(*_) >> [coin1, coin2, coin3]
-          cacheUtil.getIconBytes(_, _) >>> [icon1, icon2, icon3]
+          cacheUtil.retrieveFromCache(_, "binance-ExchangeInfo", _) >> getExchangeInfo([symbol1, symbol2, symbol3])
+          restTemplate.execute(*_) >> [coin1, coin2, coin3]
+          cacheUtil.getIconBytes(symbol1, _) >> icon1
+          cacheUtil.getIconBytes(symbol2, _) >> icon2
+          cacheUtil.getIconBytes(symbol3, _) >> icon3
 
         then:
           def coins = service.getIcons()
@@ -573,8 +606,11 @@ class BinanceExchangeServiceImplTest extends Specification {
           def icon3 = null
 
         when:
-          cacheUtil.retrieveFromCache(*_) >> [coin1, coin2, coin3]
-          cacheUtil.getIconBytes(_, _) >>> [icon1, icon2, icon3]
+          cacheUtil.retrieveFromCache(_, "binance-ExchangeInfo", _) >> getExchangeInfo([symbol1, symbol2, symbol3])
+          restTemplate.execute(*_) >> [coin1, coin2, coin3]
+          cacheUtil.getIconBytes(symbol1, _) >> icon1
+          cacheUtil.getIconBytes(symbol2, _) >> icon2
+          cacheUtil.getIconBytes(symbol3, _) >> icon3
 
         then:
           def coins = service.getMissingIcons()
@@ -584,22 +620,30 @@ class BinanceExchangeServiceImplTest extends Specification {
           assert coins.size() == 2
     }
 
-    ResponseEntity<Object[]> getMockCoinTicker() {
-        def now = LocalDateTime.now()
-        def closeTime1 = now.minusDays(1).minusHours(1).toInstant(ZoneOffset.UTC).toEpochMilli()
-        def closeTime2 = now.toInstant(ZoneOffset.UTC).toEpochMilli()
-        return getMockCoinTicker(closeTime1, closeTime2)
+    ExchangeInfo getExchangeInfo(List<String> symbols) {
+        def exchangeInfo = new ExchangeInfo()
+        exchangeInfo.setCoins(symbols.collect {
+            new Coin(symbol: it, baseAsset: it - "USD", quoteAsset: "USD", status: "TRADING", permissions: ["SPOT"])
+        })
+        return exchangeInfo
     }
 
-    ResponseEntity<Object[]> getMockCoinTicker(long closeTime1, long closeTime2) {
+    String getMockCoinTickerJson(long closeTime1, long closeTime2) {
         //The zeroes are just filler data - not needed for the tests, but are necessary for the tests to complete.
         def coinDataList1 = [0L, "0.0", "0.0", "0.0", "0.0", "0.0", closeTime1, "0.0", 0]
         def coinDataList2 = [0L, "0.0", "0.0", "0.0", "0.0", "0.0", closeTime2, "0.0", 0]
+        return new ObjectMapper().writeValueAsString([coinDataList1, coinDataList2])
+    }
+
+    CandleSeries getCandleSeries(String symbol, List<Double> opens, List<Double> closes, List<Double> volumes) {
+        def series = new CandleSeries(symbol)
+        opens.eachWithIndex { open, index ->
+            series.add(index, open, 0.0, 0.0, closes[index], volumes[index], index + 1, 0.0, 0)
+        }
+        return series
+    }
 
-        def coinData = new Object[2]
-        coinData[0] = coinDataList1
-        coinData[1] = coinDataList2
-        def response = ResponseEntity.of(Optional.of(coinData)) as ResponseEntity<Object[]>
-        return response
+    MockClientHttpResponse getMockResponse(String json) {
+        return new MockClientHttpResponse(json.getBytes(), HttpStatus.OK)
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.scanner.cryptoserver.exchange.binance.service
+
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class BinanceRateLimiterTest extends Specification {
+    private long now
+    private BinanceRateLimiter rateLimiter
+
+    def setup() {
+        now = 0
+        //1200 weight a minute is 20 weight a second
+        rateLimiter = new BinanceRateLimiter("binance", 1200, 5000, { now })
+    }
+
+    def "test reserve() does not wait while there is weight available"() {
+        when:
+          def wait = rateLimiter.reserve(1000)
+
+        then:
+          assert wait == 0
+          assert rateLimiter.getAvailable() == 200
+    }
+
+    def "test reserve() waits for weight to be refilled"() {
+        given:
+          rateLimiter.reserve(1200)
+
+        when:
+          def wait = rateLimiter.reserve(40)
+
+        then:
+          //40 weight takes 2 seconds to refill
+          assert TimeUnit.NANOSECONDS.toMillis(wait) == 2000
+
+        when:
+          now += TimeUnit.SECONDS.toNanos(2)
+
+        then:
+          assert Math.round(rateLimiter.getAvailable()) == 0
+    }
+
+    def "test reserve() rejects a call that would wait too long"() {
+        given:
+          rateLimiter.reserve(1200)
+
+        when:
+          //200 weight takes 10 seconds to refill, which is more than the 5 second maximum wait
+          rateLimiter.reserve(200)
+
+        then:
+          thrown(RateLimitException)
+          //the rejected call doesn't use any weight
+          assert rateLimiter.getAvailable() == 0
+    }
+
+    def "test update() resyncs the available weight from the used weight header"() {
+        given:
+          def headers = new HttpHeaders()
+          headers.add(header, "1100")
+
+        when:
+          rateLimiter.update(headers)
+
+        then:
+          assert rateLimiter.getAvailable() == 100
+
+        where:
+          header << ["X-MBX-USED-WEIGHT-1M", "X-MBX-USED-WEIGHT"]
+    }
+
+    def "test update() takes off the weight of the calls that are still in flight"() {
+        given:
+          def first = rateLimiter.acquire(100)
+          def second = rateLimiter.acquire(200)
+          def headers = new HttpHeaders()
+          //the exchange has only counted the first call
+          headers.add("X-MBX-USED-WEIGHT-1M", "100")
+
+        when:
+          first.update(headers)
+
+        then:
+          assert rateLimiter.getInFlight() == 200
+          assert rateLimiter.getAvailable() == 900
+
+        when:
+          //the second call fails without a response
+          second.close()
+          second.close()
+
+        then:
+          assert rateLimiter.getInFlight() == 0
+          assert rateLimiter.getAvailable() == 900
+    }
+
+    def "test update() with a 429 blocks calls for the retry after time"() {
+        given:
+          def headers = new HttpHeaders()
+          headers.add(HttpHeaders.RETRY_AFTER, retryAfter)
+
+        when:
+          rateLimiter.update(status, headers)
+          rateLimiter.reserve(1)
+
+        then:
+          thrown(RateLimitException)
+
+        when:
+          now += TimeUnit.SECONDS.toNanos(retryAfter as long)
+          def wait = rateLimiter.reserve(1)
+
+        then:
+          assert wait == 0
+
+        where:
+          status                        | retryAfter
+          HttpStatus.TOO_MANY_REQUESTS  | "30"
+          HttpStatus.I_AM_A_TEAPOT      | "120"
+    }
+
+    def "test update() with a successful response and no header does not change the available weight"() {
+        when:
+          rateLimiter.update(HttpStatus.OK, new HttpHeaders())
+
+        then:
+          assert rateLimiter.getAvailable() == 1200
+    }
+}
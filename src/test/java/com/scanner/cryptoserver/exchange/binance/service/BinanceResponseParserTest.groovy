@@ -0,0 +1,89 @@
+package com.scanner.cryptoserver.exchange.binance.service
+
+import spock.lang.Specification
+
+class BinanceResponseParserTest extends Specification {
+    private BinanceResponseParser parser
+
+    def setup() {
+        parser = new BinanceResponseParser()
+    }
+
+    def "test parseKlines"() {
+        given:
+          def json = "[[1499040000000,\"0.01634790\",\"0.80000000\",\"0.01575800\",\"0.01577100\",\"148976.11427815\"," +
+                  "1499644799999,\"2434.19055334\",308,\"1756.87402397\",\"28.46694368\",\"17928899.62484339\"]," +
+                  "[1499644800000,\"0.01577100\",\"0.90000000\",\"0.01500000\",\"0.01600000\",\"100.5\"," +
+                  "1500249599999,\"1000.25\",12,\"0.0\",\"0.0\",\"0\"]]"
+
+        when:
+          def tickers = parser.parseKlines(new ByteArrayInputStream(json.getBytes()), "LTCBTC")
+
+        then:
+          assert tickers.size() == 2
+          assert tickers.getSymbol() == "LTCBTC"
+          assert tickers.getOpenTime(0) == 1499040000000L
+          assert tickers.getOpen(0) == 0.0163479
+          assert tickers.getHigh(0) == 0.8
+          assert tickers.getLow(0) == 0.015758
+          assert tickers.getClose(0) == 0.015771
+          assert tickers.getVolume(0) == 148976.11427815
+          assert tickers.getCloseTime(0) == 1499644799999L
+          assert tickers.getQuoteAssetVolume(0) == 2434.19055334
+          assert tickers.getNumberOfTrades(0) == 308
+          assert tickers.getClose(1) == 0.016
+          assert Double.isNaN(tickers.getUsdVolume(1))
+    }
+
+    def "test parseKlines() for empty response"() {
+        when:
+          def tickers = parser.parseKlines(new ByteArrayInputStream("[]".getBytes()), "LTCBTC")
+
+        then:
+          assert tickers != null
+          assert tickers.isEmpty()
+    }
+
+    def "test parse24HrTickers"() {
+        given:
+          def json = "[{\"symbol\":\"BNBBTC\",\"priceChange\":\"-94.99999800\",\"priceChangePercent\":\"-95.960\"," +
+                  "\"weightedAvgPrice\":\"0.29628482\",\"lastPrice\":\"4.00000200\",\"bidPrice\":\"4.00000000\"," +
+                  "\"highPrice\":\"100.00000000\",\"lowPrice\":\"0.10000000\",\"volume\":\"8913.30000000\"," +
+                  "\"quoteVolume\":\"15.30000000\",\"openTime\":1499783499040,\"closeTime\":1499869899040," +
+                  "\"firstId\":28385,\"lastId\":28460,\"count\":76}," +
+                  "{\"symbol\":\"LTCUSD\",\"lastPrice\":\"54.1\"}]"
+
+        when:
+          def tickers = parser.parse24HrTickers(new ByteArrayInputStream(json.getBytes()))
+
+        then:
+          assert tickers.size() == 2
+          def bnb = tickers[0]
+          assert bnb.getSymbol() == "BNBBTC"
+          assert bnb.getPriceChange() == -94.999998
+          assert bnb.getPriceChangePercent() == -95.96
+          assert bnb.getLastPrice() == 4.000002
+          assert bnb.getHighPrice() == 100.0
+          assert bnb.getLowPrice() == 0.1
+          assert bnb.getVolume() == 8913.3
+          assert bnb.getQuoteVolume() == 15.3
+          assert bnb.getOpenTime() == 1499783499040L
+          assert bnb.getCloseTime() == 1499869899040L
+
+          def ltc = tickers[1]
+          assert ltc.getSymbol() == "LTCUSD"
+          assert ltc.getLastPrice() == 54.1
+          assert ltc.getVolume() == null
+    }
+
+    def "test parse24HrTicker() for a single coin"() {
+        when:
+          def ticker = parser.parse24HrTicker(new ByteArrayInputStream("{\"symbol\":\"BTCUSD\",\"volume\":\"12.5\"}".getBytes()))
+          def empty = parser.parse24HrTicker(new ByteArrayInputStream(new byte[0]))
+
+        then:
+          assert ticker.getSymbol() == "BTCUSD"
+          assert ticker.getVolume() == 12.5
+          assert empty == null
+    }
+}
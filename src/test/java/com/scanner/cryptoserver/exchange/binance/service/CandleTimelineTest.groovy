@@ -0,0 +1,115 @@
+package com.scanner.cryptoserver.exchange.binance.service
+
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CandleTimelineTest extends Specification {
+    private static final long MINUTE = 60 * 1000L
+    private static final long HOUR = 60 * MINUTE
+
+    def "test getWindow() retrieves only the candles after the last closed candle"() {
+        given:
+          def timeline = new CandleTimeline("BTCUSD")
+          def now = 10 * HOUR + 30 * 60 * 1000L
+          def fullWindowCalls = 0
+          def fetches = []
+          //hourly candles from hour 0 to hour 10 - the last one is open
+          def fullWindow = {
+              fullWindowCalls++
+              return getCandles(0, 10)
+          }
+          def fetcher = { long startTime, long endTime ->
+              fetches << [startTime, endTime]
+              return getCandles((startTime / HOUR) as int, (endTime / HOUR) as int)
+          } as CandleTimeline.CandleFetcher
+
+        when:
+          def first = timeline.getWindow(0, now, fullWindow, fetcher)
+
+        then:
+          assert fullWindowCalls == 1
+          assert fetches.isEmpty()
+          assert first.size() == 11
+          //the open candle is returned, but isn't kept in the timeline
+          assert timeline.size() == 10
+
+        when:
+          //two hours later: the previously open candle has closed, and there is a new closed candle and a new open candle
+          def later = now + 2 * HOUR
+          def second = timeline.getWindow(2 * HOUR, later, fullWindow, fetcher)
+
+        then:
+          assert fullWindowCalls == 1
+          assert fetches.size() == 1
+          //only the candles after the last closed candle are retrieved
+          assert fetches[0] == [10 * HOUR, later]
+          assert second.getOpenTime(0) == 2 * HOUR
+          assert second.getOpenTime(second.size() - 1) == 12 * HOUR
+          assert second.size() == 11
+          assert (1..<second.size()).every { second.getCloseTime(it) > second.getCloseTime(it - 1) }
+          //the candles for hours 0 and 1 are older than any window asked for, and are dropped
+          assert timeline.size() == 10
+    }
+
+    def "test getWindow() retrieves the whole window when the timeline does not go back far enough"() {
+        given:
+          def timeline = new CandleTimeline("BTCUSD")
+          def now = 10 * HOUR + 30 * 60 * 1000L
+          def fullWindowCalls = 0
+          def fetcher = { long startTime, long endTime -> new CandleSeries("BTCUSD") } as CandleTimeline.CandleFetcher
+
+        when:
+          timeline.getWindow(5 * HOUR, now, { fullWindowCalls++; getCandles(5, 10) }, fetcher)
+          def window = timeline.getWindow(0, now, { fullWindowCalls++; getCandles(0, 10) }, fetcher)
+
+        then:
+          assert fullWindowCalls == 2
+          assert window.size() == 11
+          assert timeline.size() == 10
+    }
+
+    @Unroll
+    def "test getWindow() uses the timeline when the first candle opens after the start of the window"() {
+        given:
+          def timeline = new CandleTimeline("BTCUSD")
+          def now = 10 * HOUR + 30 * MINUTE
+          def fullWindowCalls = 0
+          def fetches = []
+          def fullWindow = {
+              fullWindowCalls++
+              return getCandles(firstHour, 10)
+          }
+          def fetcher = { long startTime, long endTime ->
+              fetches << [startTime, endTime]
+              return getCandles((startTime / HOUR) as int, (endTime / HOUR) as int)
+          } as CandleTimeline.CandleFetcher
+
+        when:
+          timeline.getWindow(windowStart, now, fullWindow, fetcher)
+          //a minute later, the window still starts before the first candle opens
+          def window = timeline.getWindow(windowStart + MINUTE, now + MINUTE, fullWindow, fetcher)
+
+        then:
+          assert fullWindowCalls == 1
+          assert fetches == [[10 * HOUR, now + MINUTE]]
+          assert window.getOpenTime(0) == firstHour * HOUR
+          assert window.size() == 11 - firstHour
+
+        where:
+          windowStart | firstHour
+          //the window starts inside a candle - the exchange only returns the candles that open after the start
+          30 * MINUTE | 1
+          //the coin was listed after the start of the window
+          0           | 5
+    }
+
+    //hourly candles, which open on each hour from the first to the last hour
+    CandleSeries getCandles(int firstHour, int lastHour) {
+        def series = new CandleSeries("BTCUSD")
+        (firstHour..lastHour).each { hour ->
+            series.add(hour * HOUR, 1.0, 1.0, 1.0, hour, 1.0, (hour + 1) * HOUR - 1, 1.0, 1)
+        }
+        return series
+    }
+}
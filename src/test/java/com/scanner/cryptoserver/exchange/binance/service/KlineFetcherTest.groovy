@@ -0,0 +1,105 @@
+package com.scanner.cryptoserver.exchange.binance.service
+
+import com.scanner.cryptoserver.exchange.binance.dto.CandleSeries
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class KlineFetcherTest extends Specification {
+    private static final long HOUR = 60 * 60 * 1000L
+    private ExecutorService executor
+
+    def setup() {
+        executor = Executors.newFixedThreadPool(4)
+    }
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "test fetch() retrieves a long range in pages, and merges them in close time order"() {
+        given:
+          def pages = new ConcurrentLinkedQueue()
+          def running = new AtomicInteger()
+          def maxRunning = new AtomicInteger()
+          //hourly candles - each page also returns the first candle of the next page, to test that boundary candles are not duplicated
+          def pageFetcher = { String symbol, String interval, long startTime, long endTime, int limit ->
+              maxRunning.accumulateAndGet(running.incrementAndGet(), { a, b -> Math.max(a, b) })
+              pages << [startTime, endTime, limit]
+              def series = new CandleSeries(symbol)
+              for (long openTime = startTime; openTime <= endTime + 1; openTime += HOUR) {
+                  series.add(openTime, 1.0, 1.0, 1.0, 1.0, 1.0, openTime + HOUR - 1, 1.0, 1)
+              }
+              Thread.sleep(20)
+              running.decrementAndGet()
+              return series
+          } as KlineFetcher.PageFetcher
+          def fetcher = new KlineFetcher(pageFetcher, executor, 500, 3, 20)
+          //roughly six months of hourly candles
+          def endTime = 4380 * HOUR - 1
+
+        when:
+          def candles = fetcher.fetch("BTCUSD", "1h", 0, endTime)
+
+        then:
+          assert pages.size() == 9
+          pages.each { assert it[2] == 500 }
+          assert maxRunning.get() <= 3
+          //every hour is there, in order, once - plus the candle after the last page
+          assert candles.size() == 4381
+          (0..<candles.size()).each { assert candles.getOpenTime(it) == it * HOUR }
+    }
+
+    def "test fetch() makes one call when the range fits in a page"() {
+        given:
+          def calls = new AtomicInteger()
+          def pageFetcher = { String symbol, String interval, long startTime, long endTime, int limit ->
+              calls.incrementAndGet()
+              return new CandleSeries(symbol)
+          } as KlineFetcher.PageFetcher
+          def fetcher = new KlineFetcher(pageFetcher, executor, 500, 4, 20)
+
+        when:
+          //60 days of 4-hour candles is 360 candles
+          fetcher.fetch("BTCUSD", "4h", 0, 60 * 24 * HOUR)
+
+        then:
+          assert calls.get() == 1
+    }
+
+    def "test fetch() rejects a range that is over the weight budget"() {
+        given:
+          def calls = new AtomicInteger()
+          def pageFetcher = { String symbol, String interval, long startTime, long endTime, int limit ->
+              calls.incrementAndGet()
+              return new CandleSeries(symbol)
+          } as KlineFetcher.PageFetcher
+          def fetcher = new KlineFetcher(pageFetcher, executor, 500, 4, 20)
+
+        when:
+          //a year of hourly candles is 18 pages, at a weight of 2 each
+          fetcher.fetch("BTCUSD", "1h", 0, 365 * 24 * HOUR)
+
+        then:
+          thrown(RuntimeException)
+          assert calls.get() == 0
+    }
+
+    @Unroll("test that interval #interval is #expected milliseconds")
+    def "test getIntervalMillis"() {
+        expect:
+          KlineFetcher.getIntervalMillis(interval) == expected
+
+        where:
+          interval | expected
+          "1m"     | 60 * 1000L
+          "4h"     | 4 * HOUR
+          "72h"    | 72 * HOUR
+          "1d"     | 24 * HOUR
+          "1w"     | 7 * 24 * HOUR
+    }
+}
@@ -1,8 +1,11 @@
 package com.scanner.cryptoserver.exchange.bittrex.service
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
 import com.scanner.cryptoserver.exchange.bittrex.dto.Bittrex24HrData
 import com.scanner.cryptoserver.exchange.coinmarketcap.CoinMarketCapService
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapData
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing
 import com.scanner.cryptoserver.util.CacheUtil
 import com.scanner.cryptoserver.util.UrlReader
 import spock.lang.Specification
@@ -20,7 +23,7 @@ class BittrexServiceImplTest extends Specification {
         urlReader = Mock(UrlReader)
         cacheUtil = Mock(CacheUtil)
         coinMarketCapService = Mock(CoinMarketCapService)
-        service = new BittrexServiceImpl(cacheUtil, coinMarketCapService, urlReader)
+        service = new BittrexServiceImpl(cacheUtil, coinMarketCapService, urlReader, new ObjectMapper())
     }
 
     def "test getCoinDataFor24Hour using json supplier"() {
@@ -179,6 +182,30 @@ class BittrexServiceImplTest extends Specification {
           assert !ethEur
     }
 
+    def "test setMarketCaps loads the exchange info when it is not in the cache"() {
+        given:
+          def marketList = [new Bittrex24HrData(symbol: "BTC-USD"), new Bittrex24HrData(symbol: "ETH-USD")]
+          def listing = new CoinMarketCapListing().convertToCoinMarketCapListing([new CoinMarketCapData(id: 1, symbol: "BTC", name: "Bitcoin", marketCap: 1000.0d)])
+
+        when:
+          //the exchange info isn't in the cache, so the supplier is used to load it
+          cacheUtil.retrieveFromCache("ExchangeInfo", _, _) >> { args ->
+              Supplier supplier = args.get(2)
+              return supplier.get()
+          }
+          cacheUtil.retrieveFromCache("bittrex-AllMarkets", _, _) >> marketList
+
+        then:
+          def exchangeInfo = service.setMarketCaps(listing)
+
+        expect:
+          assert exchangeInfo.isMarketCapsSet()
+          assert exchangeInfo.getCoins().size() == marketList.size()
+          def btc = exchangeInfo.getCoins().find { it.getSymbol() == "BTC-USD" }
+          assert btc.getMarketCap() == 1000.0
+          assert btc.getId() == 1
+    }
+
     @Unroll
     def "test getMissingIcons"() {
         when:
@@ -1,5 +1,6 @@
 package com.scanner.cryptoserver.exchange.coinmarketcap
 
+import com.scanner.cryptoserver.HttpClientConfig
 import com.scanner.cryptoserver.util.UrlReaderImpl
 import org.junit.Assert.assertNotNull
 import org.junit.Test
@@ -14,7 +15,7 @@ import org.springframework.web.client.RestTemplate
 @RunWith(SpringRunner::class)
 //Here, we load only the components needed - this prevents a full Spring Boot test from running, as only certain components are needed.
 //For example, startup initialization threads are not needed, etc.
-@ContextConfiguration(classes = [UrlReaderImpl::class, RestTemplate::class, CoinMarketCapApiServiceImpl::class])
+@ContextConfiguration(classes = [HttpClientConfig::class, UrlReaderImpl::class, RestTemplate::class, CoinMarketCapApiServiceImpl::class])
 @WebMvcTest
 internal class CoinMarketCapInfoIntegTest {
     @Autowired
@@ -0,0 +1,137 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap
+
+import com.scanner.cryptoserver.exchange.coinmarketcap.dto.CoinMarketCapListing
+import com.scanner.cryptoserver.exchange.service.ExchangeVisitor
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+
+class CoinMarketCapRefresherTest extends Specification {
+    private CoinMarketCapService service
+    private ExchangeVisitor visitor
+    private TestClock clock
+    private long creditsUsed
+
+    def setup() {
+        service = Mock(CoinMarketCapService)
+        visitor = Mock(ExchangeVisitor)
+        clock = new TestClock(instant: Instant.parse("2021-03-01T12:00:00Z"))
+        creditsUsed = 0
+        service.getCreditsUsed() >> { creditsUsed }
+    }
+
+    def "test refreshQuotes() only gets as many ids as the credits left today pay for"() {
+        given:
+          def refresher = new CoinMarketCapRefresher(service, visitor, 3, Duration.ofHours(1), clock)
+          def idSet = (1..1000).toSet()
+          def maxIds = []
+          service.getIdSet(visitor) >> idSet
+          service.refreshQuotes(idSet, _ as Integer) >> { args ->
+              maxIds << args[1]
+              int ids = Math.min(idSet.size(), args[1] as int)
+              creditsUsed += CoinMarketCapService.getCreditCost(ids, CoinMarketCapService.IDS_PER_CREDIT)
+              return new CoinMarketCapListing()
+          }
+
+        when:
+          def listing = refresher.refreshQuotes()
+
+        then:
+          assert listing != null
+          assert maxIds == [300]
+          assert refresher.getCreditsToday() == 3
+
+        when: "there are no credits left"
+          listing = refresher.refreshQuotes()
+
+        then:
+          assert listing == null
+          assert maxIds == [300]
+
+        when: "the next day starts"
+          clock.instant = Instant.parse("2021-03-02T00:00:01Z")
+
+        then:
+          assert refresher.getCreditsToday() == 0
+          assert refresher.refreshQuotes() != null
+          assert maxIds == [300, 300]
+    }
+
+    @Unroll
+    def "test getNextQuoteDelay() is stretched to make the credits last until the end of the day"() {
+        given:
+          def refresher = new CoinMarketCapRefresher(service, visitor, dailyCredits, Duration.ofHours(1), clock)
+          service.getIdSet(visitor) >> [1, 2].toSet()
+          service.refreshQuotes(*_) >> {
+              creditsUsed += 1
+              return new CoinMarketCapListing()
+          }
+
+        when:
+          refresher.refreshQuotes()
+
+        then:
+          //it is noon, so there are 12 hours left in the day
+          assert refresher.getNextQuoteDelay() == expectedDelay
+
+        where:
+          dailyCredits | expectedDelay
+          100          | Duration.ofHours(1)
+          7            | Duration.ofHours(2)
+          1            | Duration.ofHours(12)
+    }
+
+    def "test refreshMap() is skipped when there are not enough credits left today"() {
+        given:
+          def refresher = new CoinMarketCapRefresher(service, visitor, 1, Duration.ofHours(1), clock)
+          service.getIdSet(visitor) >> [1].toSet()
+          service.refreshQuotes(*_) >> {
+              creditsUsed += 1
+              return new CoinMarketCapListing()
+          }
+
+        when:
+          refresher.refreshQuotes()
+          refresher.refreshMap()
+
+        then:
+          0 * service.refreshCoinMarketCapMap()
+    }
+
+    def "test getInitialDelay() starts the schedule from the age of the stored value"() {
+        given:
+          def refresher = new CoinMarketCapRefresher(service, visitor, 300, Duration.ofHours(1), clock)
+          def now = clock.instant().toEpochMilli()
+
+        expect:
+          //the info was retrieved two days ago, so it is due in five days
+          assert refresher.getInitialDelay(now - Duration.ofDays(2).toMillis(), Duration.ofDays(7)) == Duration.ofDays(5)
+          assert refresher.getInitialDelay(now - Duration.ofDays(8).toMillis(), Duration.ofDays(7)) == Duration.ZERO
+          //it isn't in the cache
+          assert refresher.getInitialDelay(0, Duration.ofDays(7)) == Duration.ZERO
+    }
+
+    static class TestClock extends Clock {
+        Instant instant
+
+        @Override
+        ZoneId getZone() {
+            return ZoneOffset.UTC
+        }
+
+        @Override
+        Clock withZone(ZoneId zone) {
+            return this
+        }
+
+        @Override
+        Instant instant() {
+            return instant
+        }
+    }
+}
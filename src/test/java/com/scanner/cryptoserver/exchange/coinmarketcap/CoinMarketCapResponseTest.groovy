@@ -0,0 +1,60 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap
+
+import spock.lang.Specification
+
+class CoinMarketCapResponseTest extends Specification {
+
+    def "test parse() keeps only the ids asked for, and skips the fields that aren't used"() {
+        given:
+          def json = """{
+              "status": {"timestamp": "2021-01-01T00:00:00.000Z", "error_code": 0, "error_message": null, "credit_count": 2},
+              "data": {
+                  "1": {"id": 1, "name": "Bitcoin", "symbol": "BTC", "date_added": "2013-04-28T00:00:00.000Z",
+                        "logo": "http://mockPathToLogo.com", "tags": ["mineable"], "urls": {"website": ["https://bitcoin.org/"]},
+                        "platform": null,
+                        "quote": {"EUR": {"market_cap": 1.0}, "USD": {"price": 30000.1, "market_cap": 10000.35, "volume_24h": 50000.7804}}},
+                  "2": {"id": 2, "name": "Litecoin", "symbol": "LTC", "date_added": "2013-04-28T00:00:00.000Z"}
+              }
+          }"""
+
+        when:
+          //id 3 is not in the response, and id 2 is not asked for
+          def response = CoinMarketCapResponse.parse(json, [1, 3])
+
+        then:
+          assert response.hasData()
+          assert response.getErrorCode() == 0
+          assert response.getCreditCount() == 2
+          assert response.getData().size() == 1
+          def btc = response.getData()[0]
+          assert btc.getId() == 1
+          assert btc.getName() == "Bitcoin"
+          assert btc.getSymbol() == "BTC"
+          assert btc.getLogo() == "http://mockPathToLogo.com"
+          assert btc.getDateAdded() == "2013-04-28T00:00:00.000Z"
+          assert btc.getMarketCap() == 10000.35
+          assert btc.getVolume24HrUsd() == 50000.7804
+    }
+
+    def "test parse() for an error response"() {
+        given:
+          def json = """{"status": {"error_code": 400, "error_message": "Invalid value for \\"id\\": \\"6999\\"", "credit_count": 0}}"""
+
+        when:
+          def response = CoinMarketCapResponse.parse(json, [6999])
+
+        then:
+          assert !response.hasData()
+          assert response.getErrorCode() == 400
+          assert response.getErrorMessage() == 'Invalid value for "id": "6999"'
+          assert response.getData().isEmpty()
+    }
+
+    def "test parse() for bad json"() {
+        when:
+          CoinMarketCapResponse.parse("bad json", [1])
+
+        then:
+          thrown(IOException)
+    }
+}
@@ -22,6 +22,10 @@ class CoinMarketCapServiceTest extends Specification {
         service = new CoinMarketCapService(apiService, cacheUtil)
     }
 
+    def cleanup() {
+        service.shutdown()
+    }
+
     def "test getIdSet"() {
         given:
           def exchangeNameList = ["binance", "binanceUsa"]
@@ -79,6 +83,31 @@ class CoinMarketCapServiceTest extends Specification {
           assert idSet.find { it == id5 } == id5
     }
 
+    def "test getIdSet() is kept until the exchange info or the coin market cap map changes"() {
+        given:
+          def visitor = getExchangeVisitor()
+          def exchangeInfo = new ExchangeInfo(coins: [new Coin(baseAsset: "BTC")])
+          def map = new CoinMarketCapListing().convertToCoinMarketCapListing([new CoinMarketCapData(id: 1, symbol: "BTC", name: "Bitcoin"),
+                                                                             new CoinMarketCapData(id: 2, symbol: "ETH", name: "Ethereum")])
+          cacheUtil.getExchangeNames() >> ["binance"]
+          cacheUtil.retrieveExchangeInfoFromCache(_, "ExchangeInfo", _) >> { exchangeInfo }
+          cacheUtil.retrieveFromCache("CoinMarketCap", _, _) >> { map }
+
+        when:
+          def idSet = service.getIdSet(visitor)
+
+        then:
+          assert idSet == [1] as Set
+          assert service.getIdSet(visitor).is(idSet)
+
+        when:
+          //a refresh replaces the exchange info
+          exchangeInfo = new ExchangeInfo(coins: [new Coin(baseAsset: "BTC"), new Coin(baseAsset: "ETH")])
+
+        then:
+          assert service.getIdSet(visitor) == [1, 2] as Set
+    }
+
     @Unroll
     def "test getCoinMarketCapListing"() {
         given:
@@ -257,6 +286,91 @@ class CoinMarketCapServiceTest extends Specification {
           assert btc.getVolume24HrUsd() == btcAllCap
     }
 
+    def "test getCoinMarketCapListing() splits the ids into batches and leaves out a bad id"() {
+        given:
+          def badId = 6999
+          def idSet = ((1..250) + [badId]).toSet()
+          def calls = []
+
+        when:
+          cacheUtil.retrieveFromCache(*_) >> { args -> args.get(2).get() }
+          apiService.makeExchangeQuotesApiCall(_) >> { args ->
+              def ids = args[0][0].getValue().split(",").collect { it as Integer }
+              synchronized (calls) {
+                  calls << ids
+              }
+              return ids.contains(badId) ? getBadIdJson(badId) : getQuotesJson(ids)
+          }
+
+        then:
+          def listing = service.getCoinMarketCapListing(idSet)
+
+        expect:
+          //every good id is found, even the ones in the same batch as the bad id
+          assert listing.getData().size() == 250
+          assert !listing.getData().containsKey(badId)
+          assert calls.every { it.size() <= CoinMarketCapService.ID_BATCH_SIZE }
+          assert service.getBadIds() == [badId] as Set
+          assert service.getCallCount() == calls.size()
+          assert service.getCreditsUsed() == calls.size()
+
+        when:
+          //the bad id is not asked for again
+          calls.clear()
+          service.getCoinMarketCapListing(idSet)
+
+        then:
+          assert !calls.flatten().contains(badId)
+    }
+
+    def "test getCoinMarketCapListing() gets the new coins and a rotating slice of the others"() {
+        given:
+          def requested = []
+          cacheUtil.retrieveFromCache(*_) >> { args -> args.get(2).get() }
+          apiService.makeExchangeQuotesApiCall(_) >> { args ->
+              def ids = args[0][0].getValue().split(",").collect { it as Integer }
+              synchronized (requested) {
+                  requested.addAll(ids)
+              }
+              return getQuotesJson(ids)
+          }
+
+        when:
+          def first = service.getCoinMarketCapListing((1..10).toSet())
+
+        then:
+          assert first.getData().size() == 10
+          assert requested.sort() == (1..10).toList()
+
+        when:
+          requested.clear()
+          //right after a refresh, only a small slice of the existing coins is due - coin 11 is new, and coin 10 was delisted
+          def second = service.getCoinMarketCapListing(((1..9) + [11]).toSet())
+
+        then:
+          assert requested.contains(11)
+          assert requested.size() == 2
+          assert second.getData().keySet() == ((1..9) + [11]).toSet()
+          //the first listing is not changed
+          assert first.getData().size() == 10
+          assert !first.getData().containsKey(11)
+
+        when:
+          second.getData().put(12, new CoinMarketCapData(id: 12))
+
+        then:
+          thrown(UnsupportedOperationException)
+    }
+
+    def getQuotesJson(List<Integer> ids) {
+        def data = ids.collect { "\"$it\": {\"id\": $it, \"name\": \"Coin$it\", \"symbol\": \"C$it\", \"date_added\": \"24 Mar 2010\"}" }
+        return "{\"status\": {\"error_code\": 0, \"credit_count\": 1}, \"data\": {${data.join(",")}}}"
+    }
+
+    def getBadIdJson(int id) {
+        return "{\"status\": {\"error_code\": 400, \"error_message\": \"Invalid value for \\\"id\\\": \\\"$id\\\"\", \"credit_count\": 1}}"
+    }
+
     def getExchangeVisitor() {
         return new ExchangeVisitor() {
             @Override
@@ -158,4 +158,31 @@ class CoinMarketCapListingTest extends Specification {
           //we test this to ensure that there are no null pointer exceptions
           0   | null    | null       | 0   | null    | null      | 0   | null    | null
     }
+
+    def "test findData() by id"() {
+        given:
+          def data1 = new CoinMarketCapData(id: 1, symbol: "BTC", name: "Bitcoin")
+          def data2 = new CoinMarketCapData(id: 1027, symbol: "ETH", name: "Ethereum")
+          def listing = new CoinMarketCapListing().convertToCoinMarketCapListing([data2, data1])
+
+        expect:
+          assert listing.findData(1).get() == data1
+          assert listing.findData(1027).get() == data2
+          assert !listing.findData(2).isPresent()
+          assert !new CoinMarketCapListing().findData(1).isPresent()
+    }
+
+    def "test setData() replaces the index"() {
+        given:
+          def listing = new CoinMarketCapListing().convertToCoinMarketCapListing([new CoinMarketCapData(id: 1, symbol: "BTC", name: "Bitcoin")])
+          assert listing.findData("BTC", "").isPresent()
+
+        when:
+          listing.setData([2: new CoinMarketCapData(id: 2, symbol: "LTC", name: "Litecoin")])
+
+        then:
+          assert !listing.findData("BTC", "").isPresent()
+          assert listing.findData("Litecoin", "").get().getId() == 2
+          assert listing.findData(2).isPresent()
+    }
 }
@@ -0,0 +1,65 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap.dto
+
+import com.scanner.cryptoserver.exchange.service.ExchangeVisitor
+import com.scanner.cryptoserver.util.dto.Coin
+import org.jetbrains.annotations.NotNull
+import spock.lang.Specification
+
+class ExchangeInfoTest extends Specification {
+    private def visitor = new ExchangeVisitor() {
+        @Override
+        String getName(@NotNull String coin) {
+            return coin
+        }
+
+        @Override
+        String getSymbol(@NotNull String coin) {
+            return coin
+        }
+    }
+
+    def "test snapshotOf() removes the non-USA markets and can't be changed"() {
+        given:
+          def coins = [new Coin(symbol: "BTCUSDT", baseAsset: "BTC", quoteAsset: "USDT"),
+                       new Coin(symbol: "BTCEUR", baseAsset: "BTC", quoteAsset: "EUR")]
+
+        when:
+          def info = ExchangeInfo.snapshotOf(coins, ["EUR"])
+
+        then:
+          assert info.isSnapshot()
+          assert !info.isMarketCapsSet()
+          assert info.getCoins().collect { it.getSymbol() } == ["BTCUSDT"]
+          assert info.getIndex(["EUR"]).getCoin("BTCUSDT").isPresent()
+          //the coins that were passed in are not changed
+          assert coins.size() == 2
+
+        when:
+          info.getCoins().add(new Coin(symbol: "LTCUSDT"))
+
+        then:
+          thrown(UnsupportedOperationException)
+    }
+
+    def "test withMarketCaps() makes a new snapshot and leaves the old one unchanged"() {
+        given:
+          def data = new CoinMarketCapData(id: 1, symbol: "BTC", name: "BTC", marketCap: 1000.0)
+          def listing = new CoinMarketCapListing(data: [1: data])
+          def coin = new Coin(symbol: "BTCUSDT", baseAsset: "BTC", quoteAsset: "USDT")
+          def info = ExchangeInfo.snapshotOf([coin], ["EUR"])
+
+        when:
+          def withMarketCaps = info.withMarketCaps(visitor, listing, ["EUR"])
+
+        then:
+          assert !withMarketCaps.is(info)
+          assert withMarketCaps.isSnapshot()
+          assert withMarketCaps.isMarketCapsSet()
+          assert withMarketCaps.getCoins()[0].getMarketCap() == 1000.0
+          assert withMarketCaps.getCoins()[0].getId() == 1
+          assert withMarketCaps.getIndex(["EUR"]).getCoin("BTCUSDT").get().getMarketCap() == 1000.0
+          //the coin in the old snapshot, which other threads may be reading, is not changed
+          assert !coin.getId()
+          assert info.getCoins()[0].is(coin)
+    }
+}
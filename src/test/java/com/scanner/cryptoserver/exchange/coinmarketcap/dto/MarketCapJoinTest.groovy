@@ -0,0 +1,55 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap.dto
+
+import com.scanner.cryptoserver.exchange.binance.service.BinanceExchangeVisitor
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MarketCapJoinTest extends Specification {
+    private CoinMarketCapListing listing
+
+    def setup() {
+        listing = new CoinMarketCapListing().convertToCoinMarketCapListing([
+                new CoinMarketCapData(id: 1, symbol: "BTC", name: "Bitcoin"),
+                new CoinMarketCapData(id: 2, symbol: "UNI", name: "Universe"),
+                new CoinMarketCapData(id: 3, symbol: "UNI", name: "Uniswap"),
+                new CoinMarketCapData(id: 4, symbol: "VGX", name: "Voyager Token"),
+                new CoinMarketCapData(id: 5, symbol: "MIOTA", name: "IOTA")])
+    }
+
+    @Unroll
+    def "test find() maps the exchange coin to the coin market cap coin"() {
+        when:
+          def data = listing.getJoin(new BinanceExchangeVisitor()).find(baseAsset)
+
+        then:
+          assert data?.getId() == expectedId
+
+        where:
+          baseAsset | expectedId
+          "BTC"     | 1
+          //"UNI" is Uniswap on the exchange
+          "UNI"     | 3
+          //"BQX" on the exchange is "VGX" on coin market cap
+          "BQX"     | 4
+          //found by name
+          "IOTA"    | 5
+          "NONE"    | null
+          null      | null
+    }
+
+    def "test the join is kept for the listing, and replaced with the data"() {
+        given:
+          def visitor = new BinanceExchangeVisitor()
+          def join = listing.getJoin(visitor)
+
+        expect:
+          assert listing.getJoin(visitor).is(join)
+
+        when:
+          listing.setData([6: new CoinMarketCapData(id: 6, symbol: "BTC", name: "Bitcoin")])
+
+        then:
+          assert !listing.getJoin(visitor).is(join)
+          assert listing.getJoin(visitor).find("BTC").getId() == 6
+    }
+}
@@ -0,0 +1,67 @@
+package com.scanner.cryptoserver.exchange.coinmarketcap.dto
+
+import com.scanner.cryptoserver.util.dto.Coin
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class SymbolIndexTest extends Specification {
+
+    def "test lookup by symbol, base asset and quote asset"() {
+        given:
+          def btcUsd = new Coin(symbol: "BTCUSD", baseAsset: "BTC", quoteAsset: "USD")
+          def btcUsdt = new Coin(symbol: "BTCUSDT", baseAsset: "BTC", quoteAsset: "USDT")
+          def ltcUsd = new Coin(symbol: "LTCUSD", baseAsset: "LTC", quoteAsset: "USD")
+          def exchangeInfo = new ExchangeInfo(coins: [btcUsd, btcUsdt, ltcUsd])
+
+        when:
+          def index = exchangeInfo.buildIndex(["EUR"])
+
+        then:
+          assert index.getCoin("BTCUSDT").get() == btcUsdt
+          assert !index.getCoin("ETHUSD").isPresent()
+          assert !index.getCoin(null).isPresent()
+          assert index.getCoinsForBaseAsset("BTC") == [btcUsd, btcUsdt]
+          assert index.getCoinsForQuoteAsset("USD") == [btcUsd, ltcUsd]
+          assert index.getCoinsForQuoteAsset("EUR").isEmpty()
+          assert index.getBaseAssets() == ["BTC", "LTC"].toSet()
+          assert index.getQuoteAssets() == ["USD", "USDT"].toSet()
+          //the index is kept with the exchange info, and is not rebuilt
+          assert exchangeInfo.getIndex(["EUR"]).is(index)
+    }
+
+    @Unroll("test that #symbol with status #status, permissions #permissions and quote #quote is trading in a USA market: #expected")
+    def "test isTradingInUsaMarket"() {
+        given:
+          def coin = new Coin(symbol: symbol, quoteAsset: quote, status: status, permissions: permissions)
+          def exchangeInfo = new ExchangeInfo(coins: [coin])
+
+        when:
+          def index = exchangeInfo.getIndex(["EUR", "GBP"])
+
+        then:
+          assert index.isTradingInUsaMarket(symbol) == expected
+
+        where:
+          symbol    | quote  | status    | permissions | expected
+          "BTCUSD"  | "USD"  | "TRADING" | ["SPOT"]    | true
+          "BTCEUR"  | "EUR"  | "TRADING" | ["SPOT"]    | false
+          "BTCUSDT" | "USDT" | "BREAK"   | ["SPOT"]    | false
+          "XRPBULL" | "USD"  | "TRADING" | ["MARGIN"]  | false
+          "LTCUSD"  | "USD"  | null      | null        | false
+    }
+
+    def "test setCoins() clears the index"() {
+        given:
+          def exchangeInfo = new ExchangeInfo(coins: [new Coin(symbol: "BTCUSD")])
+          def index = exchangeInfo.getIndex([])
+
+        when:
+          exchangeInfo.setCoins([new Coin(symbol: "LTCUSD")])
+
+        then:
+          def newIndex = exchangeInfo.getIndex([])
+          assert !newIndex.is(index)
+          assert newIndex.containsSymbol("LTCUSD")
+          assert !newIndex.containsSymbol("BTCUSD")
+    }
+}
@@ -0,0 +1,184 @@
+package com.scanner.cryptoserver.exchange.service
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
+import com.scanner.cryptoserver.util.SnapshotRefresher
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class TickerStreamTest extends Specification {
+    private List<CoinDataFor24Hr> rows
+    private SnapshotRefresher<List<CoinDataFor24Hr>> refresher
+    private TickerStream stream
+    private List<RecordingEmitter> emitters
+    private ExecutorService sender
+    //when set, the next client to connect is given this emitter
+    private RecordingEmitter nextEmitter
+
+    def setup() {
+        rows = [getCoin("BTCUSD", 100.0, 10.0), getCoin("ETHUSD", 10.0, 20.0)]
+        refresher = new SnapshotRefresher("test", { rows }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+        emitters = []
+        sender = Executors.newSingleThreadExecutor()
+        stream = new TickerStream("test", refresher, new ObjectMapper(), sender) {
+            @Override
+            SseEmitter createEmitter() {
+                def emitter = nextEmitter ?: new RecordingEmitter()
+                nextEmitter = null
+                emitters << emitter
+                return emitter
+            }
+        }
+    }
+
+    def cleanup() {
+        stream.shutdown()
+        refresher.shutdown()
+    }
+
+    //wait for the sender thread to send everything that has been queued
+    private void flush() {
+        sender.submit({} as Runnable).get(5, TimeUnit.SECONDS)
+    }
+
+    def "test subscribe() sends the whole snapshot, with icons"() {
+        when:
+          stream.subscribe()
+          flush()
+
+        then:
+          def events = emitters[0].events
+          assert events.size() == 1
+          assert events[0].name == TickerStream.SNAPSHOT_EVENT
+          assert events[0].data*.symbol == ["BTCUSD", "ETHUSD"]
+          assert events[0].data[0].icon
+    }
+
+    def "test a refresh sends only the coins that changed, without icons"() {
+        given:
+          stream.subscribe()
+          stream.subscribe()
+
+        when:
+          rows = [getCoin("BTCUSD", 101.0, 10.0), getCoin("ETHUSD", 10.0, 20.0)]
+          refresher.refresh()
+          flush()
+
+        then:
+          emitters.each {
+              assert it.events.size() == 2
+              def delta = it.events[1]
+              assert delta.name == TickerStream.DELTA_EVENT
+              assert delta.data.changed*.symbol == ["BTCUSD"]
+              assert delta.data.changed[0].lastPrice == 101.0
+              assert !delta.data.changed[0].containsKey("icon")
+              assert delta.data.removed.isEmpty()
+          }
+    }
+
+    def "test a refresh with no changes sends nothing"() {
+        given:
+          stream.subscribe()
+
+        when:
+          rows = [getCoin("BTCUSD", 100.0, 10.0), getCoin("ETHUSD", 10.0, 20.0)]
+          refresher.refresh()
+          flush()
+
+        then:
+          assert emitters[0].events.size() == 1
+    }
+
+    def "test a refresh sends the coins that are no longer on the exchange"() {
+        given:
+          stream.subscribe()
+
+        when:
+          rows = [getCoin("BTCUSD", 100.0, 10.0)]
+          refresher.refresh()
+          flush()
+
+        then:
+          def delta = emitters[0].events[1]
+          assert delta.data.changed.isEmpty()
+          assert delta.data.removed == ["ETHUSD"]
+    }
+
+    def "test the stream stops listening when the last client leaves"() {
+        given:
+          stream.subscribe()
+
+        when:
+          emitters[0].complete()
+          rows = [getCoin("BTCUSD", 101.0, 10.0)]
+          refresher.refresh()
+          flush()
+
+        then:
+          assert emitters[0].events.size() == 1
+    }
+
+    def "test a refresh doesn't wait for a slow client"() {
+        given:
+          def release = new CountDownLatch(1)
+          nextEmitter = new RecordingEmitter(release: release)
+          stream.subscribe()
+
+        when: "the client is still being sent the snapshot"
+          rows = [getCoin("BTCUSD", 101.0, 10.0), getCoin("ETHUSD", 10.0, 20.0)]
+          refresher.refresh()
+
+        then:
+          assert refresher.get().is(rows)
+          assert emitters[0].events.isEmpty()
+
+        when:
+          release.countDown()
+          flush()
+
+        then: "the client gets the snapshot, then the change"
+          assert emitters[0].events*.name == [TickerStream.SNAPSHOT_EVENT, TickerStream.DELTA_EVENT]
+    }
+
+    CoinDataFor24Hr getCoin(String symbol, Double lastPrice, Double volume) {
+        def coin = new CoinDataFor24Hr()
+        coin.setSymbol(symbol)
+        coin.setLastPrice(lastPrice)
+        coin.setVolume(volume)
+        coin.setIcon("icon".getBytes())
+        return coin
+    }
+
+    //Records the events sent to a client, instead of writing them to a response.
+    static class RecordingEmitter extends SseEmitter {
+        List<Map> events = []
+        //when set, each send waits for it - like a client that is slow to read
+        CountDownLatch release
+        private Runnable completion
+
+        @Override
+        void send(SseEmitter.SseEventBuilder builder) throws IOException {
+            release?.await(5, TimeUnit.SECONDS)
+            def text = builder.build().collect { it.getData() }.join()
+            def name = text.find(/event:(\w+)/) { match, name -> name }
+            def json = text.substring(text.indexOf("data:") + 5).trim()
+            events << [name: name, data: new ObjectMapper().readValue(json, Object)]
+        }
+
+        @Override
+        void onCompletion(Runnable callback) {
+            completion = callback
+        }
+
+        @Override
+        void complete() {
+            completion?.run()
+        }
+    }
+}
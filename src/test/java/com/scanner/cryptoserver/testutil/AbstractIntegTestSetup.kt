@@ -3,6 +3,7 @@ package com.scanner.cryptoserver.testutil
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
 import com.fasterxml.jackson.module.kotlin.readValue
 import com.scanner.cryptoserver.CachingConfig
+import com.scanner.cryptoserver.HttpClientConfig
 import com.scanner.cryptoserver.exchange.binance.controller.BinanceExchangeController
 import com.scanner.cryptoserver.exchange.binance.controller.BinanceUsaExchangeController
 import com.scanner.cryptoserver.exchange.binance.service.*
@@ -19,6 +20,7 @@ import kotlinx.coroutines.GlobalScope
 import kotlinx.coroutines.async
 import org.junit.jupiter.api.BeforeEach
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.ActiveProfiles
 import org.springframework.test.context.ContextConfiguration
 import org.springframework.web.client.RestTemplate
 
@@ -37,10 +39,12 @@ import org.springframework.web.client.RestTemplate
 @ContextConfiguration(
     classes = [BinanceExchangeController::class, BinanceUsaExchangeController::class, BinanceExchangeServiceImpl::class,
         BinanceUsaExchangeServiceImpl::class, BinanceUrlExtractor::class,
-        RestTemplate::class, CachingConfig::class, CacheUtilImpl::class, CoinMarketCapApiServiceImpl::class, CoinMarketCapService::class,
+        RestTemplate::class, CachingConfig::class, HttpClientConfig::class, CacheUtilImpl::class, CoinMarketCapApiServiceImpl::class, CoinMarketCapService::class,
         BinanceExchangeVisitor::class, BittrexServiceImpl::class, BinanceUsaUrlExtractor::class,
         BinanceUrlExtractor::class, UrlReaderImpl::class]
 )
+//the cache specs and exchange urls are in the dev profile
+@ActiveProfiles("dev")
 abstract class AbstractIntegTestSetup {
     private val marketCapListing: String = "Listing"
     private val marketCap: String = "MarketCap"
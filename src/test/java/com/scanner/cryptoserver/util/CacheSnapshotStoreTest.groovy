@@ -0,0 +1,130 @@
+package com.scanner.cryptoserver.util
+
+import com.github.benmanes.caffeine.cache.Caffeine
+import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
+import org.springframework.cache.support.SimpleCacheManager
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.time.Duration
+
+class CacheSnapshotStoreTest extends Specification {
+    private File file
+    private SnapshotRefresher<List<CoinDataFor24Hr>> refresher
+
+    def setup() {
+        file = Files.createTempFile("cache-snapshot", ".json").toFile()
+        file.delete()
+    }
+
+    def cleanup() {
+        refresher?.shutdown()
+        file.delete()
+    }
+
+    def "test the saved caches are loaded with the time they were loaded"() {
+        given:
+          def loadedAt = System.currentTimeMillis() - Duration.ofHours(2).toMillis()
+          def cache = createCache("binance-ExchangeInfo")
+          cache.restore("binance-ExchangeInfo", [createCoin("BTCUSD")], loadedAt)
+          new CacheSnapshotStore(createCacheManager(cache), file.getPath()).save()
+
+        when:
+          def newCache = createCache("binance-ExchangeInfo")
+          new CacheSnapshotStore(createCacheManager(newCache), file.getPath()).load()
+          def entries = []
+          newCache.forEachEntry({ key, value, time -> entries.add([key, value, time]) })
+
+        then:
+          assert entries.size() == 1
+          assert entries[0][0] == "binance-ExchangeInfo"
+          assert entries[0][1][0] instanceof CoinDataFor24Hr
+          assert entries[0][1][0].getSymbol() == "BTCUSD"
+          assert entries[0][2] == loadedAt
+          //the value is old, so it is reloaded on the next read
+          assert newCache.startRefresh("binance-ExchangeInfo")
+    }
+
+    def "test the saved snapshot refreshers are seeded"() {
+        given:
+          def loadedAt = System.currentTimeMillis() - 1000
+          def store = new CacheSnapshotStore(createCacheManager(), file.getPath())
+          refresher = new SnapshotRefresher("binance-All24HourTicker", { [createCoin("ETHUSD")] }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+          refresher.seed([createCoin("BTCUSD")], loadedAt)
+          store.register(refresher)
+          store.save()
+          refresher.shutdown()
+
+        when:
+          def newStore = new CacheSnapshotStore(createCacheManager(), file.getPath())
+          refresher = new SnapshotRefresher("binance-All24HourTicker", { [createCoin("ETHUSD")] }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+          newStore.register(refresher)
+          newStore.load()
+
+        then:
+          assert refresher.getLoadedAt() == loadedAt
+          assert refresher.get()*.getSymbol() == ["BTCUSD"]
+    }
+
+    def "test values that are too old are not loaded"() {
+        given:
+          def cache = createCache("binance-ExchangeInfo")
+          cache.restore("binance-ExchangeInfo", [createCoin("BTCUSD")], System.currentTimeMillis() - Duration.ofDays(2).toMillis())
+          new CacheSnapshotStore(createCacheManager(cache), file.getPath()).save()
+
+        when:
+          def newCache = createCache("binance-ExchangeInfo")
+          new CacheSnapshotStore(createCacheManager(newCache), file.getPath()).load()
+
+        then:
+          assert newCache.get("binance-ExchangeInfo") == null
+    }
+
+    def "test values are loaded for as long as their cache keeps them"() {
+        given:
+          def loadedAt = System.currentTimeMillis() - Duration.ofDays(2).toMillis()
+          def cache = createCache("CoinMarketCap")
+          cache.restore("Info", [createCoin("BTCUSD")], loadedAt)
+          new CacheSnapshotStore(createCacheManager(cache), file.getPath()).save()
+
+        when:
+          //the coin market cap info is kept for a week, and isn't refreshed in the background
+          def newCache = new RefreshAheadCache("CoinMarketCap", Caffeine.newBuilder().expireAfter(new RefreshAheadCache.ExpireAfterLoad(Duration.ofDays(8))).build(), null)
+          new CacheSnapshotStore(createCacheManager(newCache), file.getPath()).load()
+
+        then:
+          assert newCache.get("Info").get()*.getSymbol() == ["BTCUSD"]
+          assert newCache.getLoadedAt("Info") == loadedAt
+          assert !newCache.startRefresh("Info")
+    }
+
+    def "test a broken file is ignored"() {
+        given:
+          file.text = "not json"
+          def cache = createCache("binance-ExchangeInfo")
+
+        when:
+          new CacheSnapshotStore(createCacheManager(cache), file.getPath()).load()
+
+        then:
+          noExceptionThrown()
+          assert cache.get("binance-ExchangeInfo") == null
+    }
+
+    private static RefreshAheadCache createCache(String name) {
+        return new RefreshAheadCache(name, Caffeine.newBuilder().build(), Duration.ofHours(1))
+    }
+
+    private static SimpleCacheManager createCacheManager(RefreshAheadCache... caches) {
+        def cacheManager = new SimpleCacheManager()
+        cacheManager.setCaches(caches.toList())
+        cacheManager.initializeCaches()
+        return cacheManager
+    }
+
+    private static CoinDataFor24Hr createCoin(String symbol) {
+        def coin = new CoinDataFor24Hr()
+        coin.setSymbol(symbol)
+        return coin
+    }
+}
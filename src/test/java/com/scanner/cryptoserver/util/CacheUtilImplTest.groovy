@@ -0,0 +1,174 @@
+package com.scanner.cryptoserver.util
+
+import com.github.benmanes.caffeine.cache.Caffeine
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager
+import org.springframework.cache.support.SimpleCacheManager
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CacheUtilImplTest extends Specification {
+    private static final int CALLERS = 20
+    private CacheUtilImpl cacheUtil
+    private def executor = Executors.newFixedThreadPool(CALLERS)
+
+    def setup() {
+        cacheUtil = new CacheUtilImpl(new ConcurrentMapCacheManager("test"), 2000)
+    }
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "test retrieveFromCache() calls the supplier once for many concurrent callers"() {
+        given:
+          def calls = new AtomicInteger()
+          def supplier = {
+              calls.incrementAndGet()
+              Thread.sleep(200)
+              return ["BTCUSD"]
+          }
+
+        when:
+          def results = callConcurrently { cacheUtil.retrieveFromCache("test", "AllTickers", supplier) }
+
+        then:
+          assert calls.get() == 1
+          assert results.size() == CALLERS
+          results.each { assert it.get() == ["BTCUSD"] }
+          assert cacheUtil.retrieveFromCache("test", "AllTickers", supplier) == ["BTCUSD"]
+          assert calls.get() == 1
+    }
+
+    def "test retrieveFromCache() passes a supplier error to all the waiting callers"() {
+        given:
+          def calls = new AtomicInteger()
+          def supplier = {
+              calls.incrementAndGet()
+              Thread.sleep(200)
+              throw new IllegalStateException("exchange is down")
+          }
+
+        when:
+          def results = callConcurrently { cacheUtil.retrieveFromCache("test", "AllTickers", supplier) }
+
+        then:
+          assert calls.get() == 1
+          results.each { assert it.get() instanceof IllegalStateException }
+
+        when: "the next caller tries again"
+          def value = cacheUtil.retrieveFromCache("test", "AllTickers", { "BTCUSD" })
+
+        then:
+          assert value == "BTCUSD"
+    }
+
+    def "test retrieveFromCache() stops waiting for a supplier that takes too long"() {
+        given:
+          cacheUtil = new CacheUtilImpl(new ConcurrentMapCacheManager("test"), 100)
+          def loading = new CountDownLatch(1)
+          def slowSupplier = {
+              loading.countDown()
+              Thread.sleep(1000)
+              return "BTCUSD"
+          }
+          def slowCall = executor.submit({ cacheUtil.retrieveFromCache("test", "AllTickers", slowSupplier) } as Callable)
+          loading.await(1, TimeUnit.SECONDS)
+
+        when:
+          cacheUtil.retrieveFromCache("test", "AllTickers", { "ETHUSD" })
+
+        then:
+          def e = thrown(RuntimeException)
+          assert e.getMessage().contains("Timed out")
+          assert slowCall.get() == "BTCUSD"
+    }
+
+    def "test retrieveFromCache() returns a soft-expired value and reloads it in the background"() {
+        given:
+          def cacheManager = new SimpleCacheManager()
+          cacheManager.setCaches([new RefreshAheadCache("test", Caffeine.newBuilder().build(), Duration.ofMillis(50))])
+          cacheManager.initializeCaches()
+          cacheUtil = new CacheUtilImpl(cacheManager, 2000)
+          def calls = new AtomicInteger()
+          def reloaded = new CountDownLatch(1)
+          def supplier = {
+              if (calls.incrementAndGet() > 1) {
+                  Thread.sleep(100)
+                  reloaded.countDown()
+              }
+              return "BTCUSD" + calls.get()
+          }
+          cacheUtil.retrieveFromCache("test", "AllTickers", supplier)
+          Thread.sleep(100)
+
+        when: "the value is soft-expired"
+          def stale = cacheUtil.retrieveFromCache("test", "AllTickers", supplier)
+          def staleAgain = cacheUtil.retrieveFromCache("test", "AllTickers", supplier)
+
+        then: "the caller doesn't wait for the reload"
+          assert stale == "BTCUSD1"
+          assert staleAgain == "BTCUSD1"
+
+        when:
+          reloaded.await(1, TimeUnit.SECONDS)
+          Thread.sleep(20)
+
+        then: "the value was reloaded once"
+          assert calls.get() == 2
+          assert cacheUtil.retrieveFromCache("test", "AllTickers", supplier) == "BTCUSD2"
+    }
+
+    def "test the icon URL has the hash of the icon"() {
+        given:
+          cacheUtil = new CacheUtilImpl(new ConcurrentMapCacheManager("IconCache"), 2000)
+
+        when:
+          def btcUrl = cacheUtil.getIconUrl("BTC", null)
+          def ethUrl = cacheUtil.getIconUrl("ETH", null)
+          def missingUrl = cacheUtil.getIconUrl("NoSuchCoin", null)
+
+        then:
+          def btcHash = cacheUtil.getIconHash("btc", null)
+          assert btcUrl == "/api/v1/icons/btc/" + btcHash + ".png"
+          assert ethUrl != btcUrl
+          assert missingUrl == null
+          assert cacheUtil.getIconHash("NoSuchCoin", null) == null
+    }
+
+    def "test the icon is found by the coin market cap id if there is no icon by the coin name"() {
+        given:
+          cacheUtil = new CacheUtilImpl(new ConcurrentMapCacheManager("IconCache"), 2000)
+
+        when:
+          def url = cacheUtil.getIconUrl("NoSuchCoin", 1027)
+
+        then: "the URL has the name of the icon, so that it can be served by that name"
+          assert url == "/api/v1/icons/1027/" + cacheUtil.getIconHash("1027", null) + ".png"
+          assert cacheUtil.getIconBytes("NoSuchCoin", 1027) == IconExtractor.getIconBytes(1027)
+          assert cacheUtil.getIconUrl("BTC", 1027).startsWith("/api/v1/icons/btc/")
+          assert cacheUtil.getIconBytes("NoSuchCoin", null).length == 0
+    }
+
+    //Call the closure from all the callers at once. Each result is the value returned, or the exception thrown.
+    private List<Optional<Object>> callConcurrently(Closure call) {
+        def start = new CountDownLatch(1)
+        def futures = (1..CALLERS).collect {
+            executor.submit({
+                start.await()
+                try {
+                    return Optional.of(call())
+                } catch (RuntimeException e) {
+                    return Optional.of(e)
+                }
+            } as Callable)
+        }
+        start.countDown()
+        return futures.collect { it.get(5, TimeUnit.SECONDS) }
+    }
+}
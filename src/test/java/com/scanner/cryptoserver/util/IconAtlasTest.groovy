@@ -0,0 +1,44 @@
+package com.scanner.cryptoserver.util
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+import javax.imageio.ImageIO
+
+class IconAtlasTest extends Specification {
+
+    def "test the atlas has every icon at its position"() {
+        given:
+          def names = ["btc", "eth", "1027", "nosuchcoin"]
+
+        when:
+          def atlas = IconAtlas.build(names, new ObjectMapper())
+          def map = new JsonSlurper().parseText(new String(atlas.getMap().getJson(), "UTF-8"))
+          def sheet = ImageIO.read(new ByteArrayInputStream(atlas.getSheets()[0].getPng()))
+
+        then:
+          assert atlas.getSheets().size() == 1
+          assert map.sheets == [atlas.getSheets()[0].getUrl()]
+          assert map.icons.keySet() == ["1027", "btc", "eth"] as Set
+          //the icons are 32 by 32, in a 2 by 2 grid
+          assert sheet.getWidth() == 64
+          assert sheet.getHeight() == 64
+          def btc = map.icons.btc
+          def btcIcon = ImageIO.read(new ByteArrayInputStream(IconExtractor.getIconBytes("btc")))
+          assert btc.width == 32
+          assert sheet.getRGB(btc.x + 16, btc.y + 16) == btcIcon.getRGB(16, 16)
+          assert atlas.getSheet(atlas.getSheets()[0].getHash()).isPresent()
+          assert !atlas.getSheet("nosuchhash").isPresent()
+    }
+
+    def "test the icon names are found in the resources"() {
+        when:
+          def names = IconExtractor.getIconNames()
+
+        then:
+          assert names.contains("btc")
+          assert names.contains("1027")
+          assert IconExtractor.getIconBytes("nosuchcoin") == null
+    }
+}
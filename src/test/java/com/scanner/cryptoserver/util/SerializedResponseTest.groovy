@@ -0,0 +1,124 @@
+package com.scanner.cryptoserver.util
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.scanner.cryptoserver.exchange.binance.dto.CoinDataFor24Hr
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicReference
+import java.util.function.Supplier
+import java.util.zip.GZIPInputStream
+
+class SerializedResponseTest extends Specification {
+    private ObjectMapper mapper = new ObjectMapper()
+
+    def "test the response is serialized once for the same value"() {
+        given:
+          def latest = new AtomicReference<SerializedResponse>()
+          def coins = [createCoin("BTCUSD")]
+
+        when:
+          def first = SerializedResponse.get(mapper, latest, coins)
+          def second = SerializedResponse.get(mapper, latest, coins)
+          def third = SerializedResponse.get(mapper, latest, [createCoin("BTCUSD")])
+
+        then:
+          assert second.is(first)
+          assert !third.is(first)
+          assert latest.get().is(third)
+    }
+
+    def "test the value is only made and serialized again when its version changes"() {
+        given:
+          def latest = new AtomicReference<SerializedResponse>()
+          def source = new Object()
+          def made = 0
+          def value = { made++; [createCoin("BTCUSD")] } as Supplier
+
+        when:
+          def first = SerializedResponse.get(mapper, latest, [source], value)
+          def second = SerializedResponse.get(mapper, latest, [source], value)
+          def third = SerializedResponse.get(mapper, latest, [new Object()], value)
+
+        then:
+          assert second.is(first)
+          assert !third.is(first)
+          assert made == 2
+    }
+
+    def "test the gzip copy has the same json"() {
+        given:
+          def response = SerializedResponse.create(mapper, [createCoin("BTCUSD"), createCoin("ETHUSD")])
+
+        when:
+          def unzipped = new GZIPInputStream(new ByteArrayInputStream(response.getGzip())).bytes
+          def coins = mapper.readValue(response.getJson(), CoinDataFor24Hr[].class)
+
+        then:
+          assert unzipped == response.getJson()
+          assert coins*.getSymbol() == ["BTCUSD", "ETHUSD"]
+    }
+
+    def "test the response entity is gzipped only if the client accepts gzip"() {
+        given:
+          def response = SerializedResponse.create(mapper, [createCoin("BTCUSD")])
+
+        when:
+          def entity = response.toResponseEntity(acceptEncoding, null, null)
+
+        then:
+          assert entity.getBody().is(gzipped ? response.getGzip() : response.getJson())
+          assert entity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING) == (gzipped ? "gzip" : null)
+          assert entity.getHeaders().getFirst(HttpHeaders.VARY) == HttpHeaders.ACCEPT_ENCODING
+
+        where:
+          acceptEncoding      | gzipped
+          null                | false
+          "identity"          | false
+          "gzip, deflate, br" | true
+    }
+
+    def "test the response is not modified if the client has the same ETag"() {
+        given:
+          def response = SerializedResponse.create(mapper, [createCoin("BTCUSD")])
+          def etag = response.toResponseEntity(acceptEncoding, null, null).getHeaders().getETag()
+
+        when:
+          def entity = response.toResponseEntity(acceptEncoding, ifNoneMatch.replace("ETAG", etag), Duration.ofSeconds(42))
+
+        then:
+          assert entity.getStatusCode() == (notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+          assert entity.hasBody() == !notModified
+          assert entity.getHeaders().getETag() == etag
+          assert entity.getHeaders().getCacheControl() == "max-age=42"
+
+        where:
+          acceptEncoding | ifNoneMatch             | notModified
+          null           | "ETAG"                  | true
+          "gzip"         | "ETAG"                  | true
+          "gzip"         | "\"other\", W/ETAG"     | true
+          null           | "*"                     | true
+          null           | "\"other\""             | false
+    }
+
+    def "test the gzip copy has a different ETag"() {
+        given:
+          def response = SerializedResponse.create(mapper, [createCoin("BTCUSD")])
+
+        when:
+          def etag = response.toResponseEntity(null, null, null).getHeaders().getETag()
+          def entity = response.toResponseEntity("gzip", etag, null)
+
+        then:
+          assert entity.getStatusCode() == HttpStatus.OK
+          assert entity.getHeaders().getETag() != etag
+    }
+
+    private static CoinDataFor24Hr createCoin(String symbol) {
+        def coin = new CoinDataFor24Hr()
+        coin.setSymbol(symbol)
+        return coin
+    }
+}
@@ -0,0 +1,103 @@
+package com.scanner.cryptoserver.util
+
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
+
+class SnapshotRefresherTest extends Specification {
+    private SnapshotRefresher<List<String>> refresher
+
+    def cleanup() {
+        refresher?.shutdown()
+    }
+
+    def "test get() loads the snapshot once for many reads"() {
+        given:
+          def loads = new AtomicInteger()
+          refresher = new SnapshotRefresher("test", { loads.incrementAndGet(); ["BTCUSD"] }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+
+        when:
+          def first = refresher.get()
+          def second = refresher.get()
+
+        then:
+          assert first == ["BTCUSD"]
+          assert second.is(first)
+          assert loads.get() == 1
+    }
+
+    def "test refresh() replaces the snapshot"() {
+        given:
+          def loads = new AtomicInteger()
+          refresher = new SnapshotRefresher("test", { ["BTCUSD" + loads.incrementAndGet()] }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+          refresher.get()
+
+        when:
+          refresher.refresh()
+
+        then:
+          assert refresher.get() == ["BTCUSD2"]
+    }
+
+    def "test refresh() keeps the previous snapshot when the exchange call fails"() {
+        given:
+          def loads = new AtomicInteger()
+          refresher = new SnapshotRefresher("test", {
+              if (loads.incrementAndGet() > 1) {
+                  throw new RuntimeException("exchange is down")
+              }
+              return ["BTCUSD"]
+          }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+          refresher.get()
+
+        when:
+          refresher.refresh()
+
+        then:
+          assert loads.get() == 2
+          assert refresher.get() == ["BTCUSD"]
+    }
+
+    def "test the snapshot is refreshed in the background while there is demand"() {
+        given:
+          def loads = new AtomicInteger()
+          refresher = new SnapshotRefresher("test", { ["BTCUSD" + loads.incrementAndGet()] }, Duration.ofMillis(20), Duration.ofMinutes(15))
+
+        when:
+          refresher.get()
+          Thread.sleep(200)
+
+        then:
+          assert loads.get() > 1
+          assert refresher.get() != ["BTCUSD1"]
+    }
+
+    def "test the snapshot is not refreshed when there is no demand"() {
+        given:
+          def loads = new AtomicInteger()
+          refresher = new SnapshotRefresher("test", { ["BTCUSD" + loads.incrementAndGet()] }, Duration.ofMillis(20), Duration.ofMillis(1))
+
+        when:
+          refresher.get()
+          Thread.sleep(200)
+
+        then:
+          assert loads.get() == 1
+    }
+
+    def "test the time to the next refresh"() {
+        given:
+          refresher = new SnapshotRefresher("test", { ["BTCUSD"] }, Duration.ofMinutes(1), Duration.ofMinutes(15))
+
+        when:
+          def beforeLoad = refresher.getTimeToNextRefresh()
+          refresher.seed(["BTCUSD"], System.currentTimeMillis() - 20_000)
+          def afterLoad = refresher.getTimeToNextRefresh()
+
+        then:
+          assert beforeLoad == Duration.ZERO
+          assert afterLoad <= Duration.ofSeconds(40)
+          assert afterLoad > Duration.ofSeconds(30)
+    }
+}